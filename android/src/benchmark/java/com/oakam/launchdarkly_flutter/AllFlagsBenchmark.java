@@ -0,0 +1,64 @@
+package com.oakam.launchdarkly_flutter;
+
+import com.launchdarkly.sdk.LDValue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+import io.flutter.plugin.common.StandardMethodCodec;
+
+/**
+ * Measures turning an {@code allFlags()} snapshot into the reply sent to Dart, on the method
+ * channel and on the binary flags channel, at several environment sizes.
+ * Only runs when benchmarks are requested: {@code ./gradlew test -Pbenchmark}.
+ */
+@RunWith(Parameterized.class)
+public class AllFlagsBenchmark {
+
+    @Parameterized.Parameters(name = "{0} flags")
+    public static Collection<Object[]> flagCounts() {
+        return Arrays.asList(new Object[][]{{10}, {100}, {1000}, {10000}});
+    }
+
+    private final int flagCount;
+    private Map<String, LDValue> flagValues;
+
+    public AllFlagsBenchmark(int flagCount) {
+        this.flagCount = flagCount;
+    }
+
+    @Before
+    public void setUp() {
+        BenchmarkRunner.assumeBenchmarksEnabled();
+        flagValues = BenchmarkFlags.flagValues(flagCount);
+    }
+
+    @Test
+    public void methodChannelReply() {
+        BenchmarkRunner.run("allFlags reply, " + flagCount + " flags", new BenchmarkRunner.Operation() {
+            @Override
+            public Object run() {
+                return StandardMethodCodec.INSTANCE.encodeSuccessEnvelope(LDValueEncoder.encodeAll(flagValues));
+            }
+        });
+    }
+
+    @Test
+    public void binaryChannelReply() {
+        final FlagPayloadCodec codec = new FlagPayloadCodec();
+        // Keys are only sent once per session, so steady state is a receiver knowing every key.
+        codec.encode(1, true, flagValues, flagValues.keySet(), 0);
+        BenchmarkRunner.run("binary allFlags reply, " + flagCount + " flags", new BenchmarkRunner.Operation() {
+            @Override
+            public Object run() {
+                return codec.encode(1, true, flagValues, flagValues.keySet(), flagCount);
+            }
+        });
+    }
+}
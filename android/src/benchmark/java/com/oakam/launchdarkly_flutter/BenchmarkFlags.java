@@ -0,0 +1,39 @@
+package com.oakam.launchdarkly_flutter;
+
+import com.launchdarkly.sdk.LDValue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/** Flag snapshots shaped like a real environment's: a mix of every flag type. */
+final class BenchmarkFlags {
+
+    private BenchmarkFlags() {}
+
+    static Map<String, LDValue> flagValues(int flagCount) {
+        final Map<String, LDValue> flagValues = new HashMap<>();
+        for (int i = 0; i < flagCount; i++) {
+            switch (i % 6) {
+                case 0:
+                    flagValues.put("bool-" + i, LDValue.of(i % 4 == 0));
+                    break;
+                case 1:
+                    flagValues.put("int-" + i, LDValue.of(i));
+                    break;
+                case 2:
+                    flagValues.put("double-" + i, LDValue.of(i + 0.5));
+                    break;
+                case 3:
+                    flagValues.put("string-" + i, LDValue.of("variation-" + i));
+                    break;
+                case 4:
+                    flagValues.put("array-" + i, LDValue.buildArray().add(i).add("two").add(true).build());
+                    break;
+                default:
+                    flagValues.put("object-" + i, LDValue.buildObject().put("enabled", true).put("limit", i).build());
+                    break;
+            }
+        }
+        return flagValues;
+    }
+}
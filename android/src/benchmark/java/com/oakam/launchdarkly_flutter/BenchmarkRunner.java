@@ -0,0 +1,60 @@
+package com.oakam.launchdarkly_flutter;
+
+import org.junit.Assume;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small JMH-style harness: runs an operation for a warmup period, then for a measurement period,
+ * and prints the throughput and the heap allocated per operation.
+ */
+final class BenchmarkRunner {
+
+    /** One benchmarked operation. Its result is kept, so the JIT cannot drop the work. */
+    interface Operation {
+        Object run();
+    }
+
+    private static final long WARMUP_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MEASUREMENT_NANOS = TimeUnit.SECONDS.toNanos(2);
+    // Operations run between two clock reads.
+    private static final int BATCH_SIZE = 16;
+
+    private static volatile Object sink;
+
+    private BenchmarkRunner() {}
+
+    /** Skips the calling benchmark unless benchmarks were requested with {@code ./gradlew test -Pbenchmark}. */
+    static void assumeBenchmarksEnabled() {
+        Assume.assumeTrue("run with -Pbenchmark", Boolean.getBoolean("benchmark"));
+    }
+
+    static void run(String name, Operation operation) {
+        runFor(WARMUP_NANOS, operation);
+
+        final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+        final long startNanos = System.nanoTime();
+        final long operations = runFor(MEASUREMENT_NANOS, operation);
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        final long allocatedBytes = threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+
+        System.out.println(String.format(Locale.ROOT, "%-56s %,16.1f ops/s %,14d B/op",
+                name, operations * 1e9 / elapsedNanos, allocatedBytes / operations));
+    }
+
+    private static long runFor(long nanos, Operation operation) {
+        final long deadline = System.nanoTime() + nanos;
+        long operations = 0;
+        do {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                sink = operation.run();
+            }
+            operations += BATCH_SIZE;
+        } while (System.nanoTime() < deadline);
+        return operations;
+    }
+}
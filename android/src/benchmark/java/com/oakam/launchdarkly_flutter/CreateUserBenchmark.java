@@ -0,0 +1,92 @@
+package com.oakam.launchdarkly_flutter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.flutter.plugin.common.MethodCall;
+
+/**
+ * Measures {@code createUser} with growing custom attribute maps, half of them private,
+ * both for a user built before (a cache hit) and for a new one every time.
+ * Only runs when benchmarks are requested: {@code ./gradlew test -Pbenchmark}.
+ */
+@RunWith(Parameterized.class)
+public class CreateUserBenchmark {
+
+    // More distinct users than the user cache holds, so every lookup misses.
+    private static final int DISTINCT_USERS = 64;
+
+    @Parameterized.Parameters(name = "{0} custom attributes")
+    public static Collection<Object[]> attributeCounts() {
+        return Arrays.asList(new Object[][]{{10}, {100}, {1000}});
+    }
+
+    private final int attributeCount;
+    private final LaunchdarklyFlutterPlugin plugin = new LaunchdarklyFlutterPlugin();
+    private final List<MethodCall> calls = new ArrayList<>(DISTINCT_USERS);
+
+    public CreateUserBenchmark(int attributeCount) {
+        this.attributeCount = attributeCount;
+    }
+
+    @Before
+    public void setUp() {
+        BenchmarkRunner.assumeBenchmarksEnabled();
+
+        final Map<String, Object> custom = new HashMap<>();
+        final List<String> privateAttributes = new ArrayList<>();
+        for (int i = 0; i < attributeCount; i++) {
+            final String key = "attribute-" + i;
+            custom.put(key, i % 3 == 0 ? "value-" + i : i % 3 == 1 ? (Object) i : (Object) (i % 2 == 0));
+            if (i % 2 == 0) {
+                privateAttributes.add(key);
+            }
+        }
+        final Map<String, String> user = new HashMap<>();
+        user.put("email", "user@example.com");
+        user.put("country", "GB");
+        user.put("name", "Benchmark User");
+
+        for (int i = 0; i < DISTINCT_USERS; i++) {
+            final Map<String, Object> arguments = new HashMap<>();
+            arguments.put("userKey", "user-" + i);
+            arguments.put("user", user);
+            arguments.put("custom", custom);
+            arguments.put("privateAttributes", privateAttributes);
+            calls.add(new MethodCall("identify", arguments));
+        }
+    }
+
+    @Test
+    public void sameUser() {
+        final MethodCall call = calls.get(0);
+        BenchmarkRunner.run("createUser, same user, " + attributeCount + " attributes", new BenchmarkRunner.Operation() {
+            @Override
+            public Object run() {
+                return plugin.createUser(call);
+            }
+        });
+    }
+
+    @Test
+    public void newUser() {
+        BenchmarkRunner.run("createUser, new user, " + attributeCount + " attributes", new BenchmarkRunner.Operation() {
+            private int next;
+
+            @Override
+            public Object run() {
+                next = (next + 1) % DISTINCT_USERS;
+                return plugin.createUser(calls.get(next));
+            }
+        });
+    }
+}
@@ -0,0 +1,45 @@
+package com.oakam.launchdarkly_flutter;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.flutter.plugin.common.BinaryMessenger;
+
+/**
+ * Stands in for the Flutter engine: counts the messages sent to Dart and their size,
+ * and lets benchmarks deliver messages to the registered handlers as if they came from Dart.
+ */
+class FakeBinaryMessenger implements BinaryMessenger {
+
+    long sentMessageCount;
+    long sentMessageBytes;
+    private final Map<String, BinaryMessageHandler> handlers = new HashMap<>();
+
+    @Override
+    public void send(String channel, ByteBuffer message) {
+        send(channel, message, null);
+    }
+
+    @Override
+    public void send(String channel, ByteBuffer message, BinaryReply callback) {
+        sentMessageCount++;
+        if (message != null) {
+            sentMessageBytes += message.position();
+        }
+    }
+
+    @Override
+    public void setMessageHandler(String channel, BinaryMessageHandler handler) {
+        if (handler == null) {
+            handlers.remove(channel);
+        } else {
+            handlers.put(channel, handler);
+        }
+    }
+
+    /** Delivers {@code message}, positioned at its start, to the handler of {@code channel}. */
+    void deliver(String channel, ByteBuffer message, BinaryReply reply) {
+        handlers.get(channel).onMessage(message, reply);
+    }
+}
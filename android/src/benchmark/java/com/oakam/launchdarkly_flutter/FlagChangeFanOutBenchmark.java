@@ -0,0 +1,131 @@
+package com.oakam.launchdarkly_flutter;
+
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.android.LDClient;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * Measures delivering a streaming update that changes many flags to Dart: the plugin's
+ * {@code collectFlagChanges}, which reads the new values from a mocked {@code LDClient} and
+ * looks up the subscriptions, then sending one {@code callbackFlagsChanged} message through a
+ * fake messenger. The coalescing delay of {@link FlagChangeDispatcher} is left out, as it needs
+ * a main thread {@code Handler}. Reports the changed flags delivered per second.
+ * Only runs when benchmarks are requested: {@code ./gradlew test -Pbenchmark}.
+ */
+@RunWith(Parameterized.class)
+public class FlagChangeFanOutBenchmark {
+
+    // Listeners on other flags, which every lookup has to get past.
+    private static final int OTHER_LISTENERS = 100;
+
+    @Parameterized.Parameters(name = "{0} changed flags")
+    public static Collection<Object[]> changedFlagCounts() {
+        return Arrays.asList(new Object[][]{{1}, {10}, {100}, {1000}});
+    }
+
+    private final int changedFlagCount;
+    private final FakeBinaryMessenger messenger = new FakeBinaryMessenger();
+    private final MethodChannel channel = new MethodChannel(messenger, "launchdarkly_flutter");
+    private final LaunchdarklyFlutterPlugin plugin = new LaunchdarklyFlutterPlugin();
+    private final LDClient client = Mockito.mock(LDClient.class);
+    private final List<String> changedFlagKeys = new ArrayList<>();
+    private final Map<String, LDValue> oldValues = new HashMap<>();
+    private final Map<String, LDValue> newValues = new HashMap<>();
+
+    public FlagChangeFanOutBenchmark(int changedFlagCount) {
+        this.changedFlagCount = changedFlagCount;
+    }
+
+    @Before
+    public void setUp() {
+        BenchmarkRunner.assumeBenchmarksEnabled();
+
+        for (int i = 0; i < changedFlagCount; i++) {
+            changedFlagKeys.add("flag-" + i);
+            oldValues.put("flag-" + i, LDValue.of("old"));
+            newValues.put("flag-" + i, LDValue.of("new"));
+            subscribe("registerFeatureFlagListener", "flag-" + i, "listener-" + i);
+        }
+        for (int i = 0; i < OTHER_LISTENERS; i++) {
+            subscribe("registerFeatureFlagListener", "other-flag-" + i, "other-listener-" + i);
+        }
+        // Every update flips the flags between two values, so each one is a change.
+        Mockito.when(client.allFlags()).thenAnswer(new Answer<Map<String, LDValue>>() {
+            private boolean flipped;
+
+            @Override
+            public Map<String, LDValue> answer(InvocationOnMock invocation) {
+                flipped = !flipped;
+                return flipped ? newValues : oldValues;
+            }
+        });
+    }
+
+    @Test
+    public void subscribedFlags() {
+        measure("flag change fan-out, " + changedFlagCount + " subscribed flags");
+    }
+
+    @Test
+    public void allFlagsListener() {
+        subscribe("registerAllFlagsListener", null, "allFlagsListener");
+        measure("flag change fan-out, " + changedFlagCount + " flags, all flags listener");
+    }
+
+    private void measure(String name) {
+        final long startMessageCount = messenger.sentMessageCount;
+        final long startMessageBytes = messenger.sentMessageBytes;
+        BenchmarkRunner.run(name + " (x" + changedFlagCount + " flags/op)", new BenchmarkRunner.Operation() {
+            private long version;
+
+            @Override
+            public Object run() {
+                final List<FlagChange> changes = plugin.collectFlagChanges(client, changedFlagKeys, null);
+                channel.invokeMethod("callbackFlagsChanged", LaunchdarklyFlutterPlugin.flagsChangedArguments(changes, ++version));
+                return changes;
+            }
+        });
+        final long messages = messenger.sentMessageCount - startMessageCount;
+        if (messages > 0) {
+            System.out.println(String.format("  %d bytes sent to Dart per message", (messenger.sentMessageBytes - startMessageBytes) / messages));
+        }
+    }
+
+    private void subscribe(final String method, String flagKey, String listenerId) {
+        final Map<String, Object> arguments = new HashMap<>();
+        arguments.put("flagKey", flagKey);
+        arguments.put("listenerId", listenerId);
+        plugin.onMethodCall(new MethodCall(method, arguments), new MethodChannel.Result() {
+            @Override
+            public void success(Object result) {
+            }
+
+            @Override
+            public void error(String errorCode, String errorMessage, Object errorDetails) {
+                throw new IllegalStateException(errorCode);
+            }
+
+            @Override
+            public void notImplemented() {
+                throw new IllegalStateException(method + " not implemented");
+            }
+        });
+    }
+}
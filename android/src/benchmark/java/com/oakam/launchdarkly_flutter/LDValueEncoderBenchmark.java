@@ -0,0 +1,52 @@
+package com.oakam.launchdarkly_flutter;
+
+import com.launchdarkly.sdk.LDValue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compares encoding an {@code allFlags()} snapshot of 1,000 flags with {@link LDValueEncoder}
+ * against converting every value to a JSON string.
+ * Only runs when benchmarks are requested: {@code ./gradlew test -Pbenchmark}.
+ */
+public class LDValueEncoderBenchmark {
+
+    private static final int FLAG_COUNT = 1000;
+
+    private Map<String, LDValue> flagValues;
+
+    @Before
+    public void setUp() {
+        BenchmarkRunner.assumeBenchmarksEnabled();
+        flagValues = BenchmarkFlags.flagValues(FLAG_COUNT);
+    }
+
+    @Test
+    public void encodeAll() {
+        BenchmarkRunner.run("LDValueEncoder.encodeAll, " + FLAG_COUNT + " flags", new BenchmarkRunner.Operation() {
+            @Override
+            public Object run() {
+                return LDValueEncoder.encodeAll(flagValues);
+            }
+        });
+    }
+
+    @Test
+    public void encodeThroughJsonStrings() {
+        // The approach the encoder avoids, measured for comparison.
+        BenchmarkRunner.run("JSON strings, " + FLAG_COUNT + " flags", new BenchmarkRunner.Operation() {
+            @Override
+            public Object run() {
+                final Map<String, Object> encoded = new HashMap<>();
+                for (Map.Entry<String, LDValue> flag : flagValues.entrySet()) {
+                    encoded.put(flag.getKey(), flag.getValue().toJsonString());
+                }
+                return encoded;
+            }
+        });
+    }
+}
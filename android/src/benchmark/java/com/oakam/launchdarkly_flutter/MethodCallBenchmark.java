@@ -0,0 +1,98 @@
+package com.oakam.launchdarkly_flutter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+import io.flutter.plugin.common.StandardMethodCodec;
+
+/**
+ * Measures a method call from Dart to its reply: decoding the call, dispatching it in
+ * {@code onMethodCall} and encoding the reply. The plugin has no client, as {@code LDClient} cannot
+ * be started on the JVM, so flag reads are answered from the plugin's own snapshot path.
+ * Only runs when benchmarks are requested: {@code ./gradlew test -Pbenchmark}.
+ */
+public class MethodCallBenchmark {
+
+    private static final String CHANNEL = "launchdarkly_flutter";
+
+    private final FakeBinaryMessenger messenger = new FakeBinaryMessenger();
+    private final LaunchdarklyFlutterPlugin plugin = new LaunchdarklyFlutterPlugin();
+    private ByteBuffer lastReply;
+    private final BinaryMessenger.BinaryReply reply = new BinaryMessenger.BinaryReply() {
+        @Override
+        public void reply(ByteBuffer message) {
+            lastReply = message;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        BenchmarkRunner.assumeBenchmarksEnabled();
+        new MethodChannel(messenger, CHANNEL).setMethodCallHandler(plugin);
+    }
+
+    @Test
+    public void boolVariation() {
+        final Map<String, Object> arguments = new HashMap<>();
+        arguments.put("flagKey", "flagKey");
+        arguments.put("fallback", true);
+        measure("boolVariationFallback", arguments);
+    }
+
+    @Test
+    public void jsonVariation() {
+        final Map<String, Object> fallback = new HashMap<>();
+        fallback.put("enabled", true);
+        fallback.put("limit", 10);
+        final Map<String, Object> arguments = new HashMap<>();
+        arguments.put("flagKey", "flagKey");
+        arguments.put("fallback", fallback);
+        measure("jsonVariation", arguments);
+    }
+
+    @Test
+    public void flagsVersion() {
+        measure("flagsVersion", null);
+    }
+
+    @Test
+    public void registerFeatureFlagListener() {
+        final Map<String, Object> arguments = new HashMap<>();
+        arguments.put("flagKey", "flagKey");
+        arguments.put("listenerId", "listenerId");
+        measure("registerFeatureFlagListener", arguments);
+    }
+
+    @Test
+    public void lastRegisteredMethod() {
+        // Registered last, so an if-chain would reach it after every other comparison;
+        // with the handler table it should cost no more than boolVariation.
+        measure("flagChangesDelivered", null);
+    }
+
+    @Test
+    public void unknownMethod() {
+        // A miss in the handler table, answered with notImplemented before any instrumentation:
+        // the cost of the channel and of the lookup alone.
+        measure("unknownMethod", null);
+    }
+
+    private void measure(String method, Object arguments) {
+        final ByteBuffer message = StandardMethodCodec.INSTANCE.encodeMethodCall(new MethodCall(method, arguments));
+        message.flip();
+        BenchmarkRunner.run("onMethodCall " + method, new BenchmarkRunner.Operation() {
+            @Override
+            public Object run() {
+                messenger.deliver(CHANNEL, message.duplicate(), reply);
+                return lastReply;
+            }
+        });
+    }
+}
@@ -0,0 +1,72 @@
+package com.oakam.launchdarkly_flutter;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+
+/**
+ * Tells when the app goes to the background and comes back, from the number of started activities.
+ * An activity stopped to be recreated for a configuration change does not count as going to the background.
+ * Callbacks run on the main thread.
+ */
+class AppVisibilityTracker implements Application.ActivityLifecycleCallbacks {
+
+  interface Listener {
+    void onForeground();
+
+    void onBackground();
+  }
+
+  private final Listener listener;
+  private int startedActivities;
+  private boolean changingConfigurations;
+
+  AppVisibilityTracker(Listener listener) {
+    this.listener = listener;
+  }
+
+  @Override
+  public void onActivityStarted(Activity activity) {
+    if (startedActivities++ == 0) {
+      if (changingConfigurations) {
+        changingConfigurations = false;
+      } else {
+        listener.onForeground();
+      }
+    }
+  }
+
+  @Override
+  public void onActivityStopped(Activity activity) {
+    if (startedActivities == 0) {
+      return;
+    }
+    if (--startedActivities == 0) {
+      if (activity.isChangingConfigurations()) {
+        changingConfigurations = true;
+      } else {
+        listener.onBackground();
+      }
+    }
+  }
+
+  @Override
+  public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+  }
+
+  @Override
+  public void onActivityResumed(Activity activity) {
+  }
+
+  @Override
+  public void onActivityPaused(Activity activity) {
+  }
+
+  @Override
+  public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+  }
+
+  @Override
+  public void onActivityDestroyed(Activity activity) {
+  }
+}
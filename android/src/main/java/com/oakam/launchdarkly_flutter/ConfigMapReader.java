@@ -0,0 +1,136 @@
+package com.oakam.launchdarkly_flutter;
+
+import com.launchdarkly.sdk.UserAttribute;
+import com.launchdarkly.sdk.android.LDConfig;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns the {@code config} map of an init call into an {@link LDConfig.Builder}.
+ * Entries that are missing or {@code null} keep the SDK defaults. Entries of the wrong type or out of
+ * range are rejected with an {@link IllegalArgumentException}, rather than silently changed by the SDK.
+ */
+final class ConfigMapReader {
+
+  // The SDK's own lower bounds for polling.
+  static final int MIN_POLLING_INTERVAL_MILLIS = 300_000;
+  static final int MIN_BACKGROUND_POLLING_INTERVAL_MILLIS = 900_000;
+
+  private ConfigMapReader() {
+  }
+
+  static LDConfig.Builder read(String mobileKey, Map<String, Object> config) {
+    final LDConfig.Builder builder = new LDConfig.Builder().mobileKey(mobileKey);
+    if (config == null) {
+      return builder;
+    }
+
+    final Boolean allAttributesPrivate = readBoolean(config, "allAttributesPrivate");
+    if (allAttributesPrivate != null && allAttributesPrivate) {
+      builder.allAttributesPrivate();
+    }
+    final Object privateAttributes = config.get("privateAttributes");
+    if (privateAttributes instanceof List) {
+      final List<UserAttribute> userAttributes = new ArrayList<>();
+      for (Object privateAttribute : (List) privateAttributes) {
+        if (privateAttribute instanceof String) {
+          userAttributes.add(UserAttribute.forName((String) privateAttribute));
+        }
+      }
+      builder.privateAttributes(userAttributes.toArray(new UserAttribute[0]));
+    }
+
+    final Integer eventsFlushIntervalMillis = readInt(config, "eventsFlushIntervalMillis", 1);
+    if (eventsFlushIntervalMillis != null) {
+      builder.eventsFlushIntervalMillis(eventsFlushIntervalMillis);
+    }
+    final Integer eventsCapacity = readInt(config, "eventsCapacity", 1);
+    if (eventsCapacity != null) {
+      builder.eventsCapacity(eventsCapacity);
+    }
+    final Integer pollingIntervalMillis = readInt(config, "pollingIntervalMillis", MIN_POLLING_INTERVAL_MILLIS);
+    if (pollingIntervalMillis != null) {
+      builder.pollingIntervalMillis(pollingIntervalMillis);
+    }
+    final Integer backgroundPollingIntervalMillis = readInt(config, "backgroundPollingIntervalMillis",
+            MIN_BACKGROUND_POLLING_INTERVAL_MILLIS);
+    if (backgroundPollingIntervalMillis != null) {
+      builder.backgroundPollingIntervalMillis(backgroundPollingIntervalMillis);
+    }
+    final Integer connectionTimeoutMillis = readInt(config, "connectionTimeoutMillis", 1);
+    if (connectionTimeoutMillis != null) {
+      builder.connectionTimeoutMillis(connectionTimeoutMillis);
+    }
+    final Boolean stream = readBoolean(config, "stream");
+    if (stream != null) {
+      builder.stream(stream);
+    }
+    final Boolean diagnosticOptOut = readBoolean(config, "diagnosticOptOut");
+    if (diagnosticOptOut != null) {
+      builder.diagnosticOptOut(diagnosticOptOut);
+    }
+    final Boolean evaluationReasons = readBoolean(config, "evaluationReasons");
+    if (evaluationReasons != null) {
+      builder.evaluationReasons(evaluationReasons);
+    }
+    final Map<String, String> secondaryMobileKeys = readSecondaryMobileKeys(config);
+    if (secondaryMobileKeys != null) {
+      builder.secondaryMobileKeys(secondaryMobileKeys);
+    }
+    return builder;
+  }
+
+  /**
+   * Reads the {@code secondaryMobileKeys} entry, which maps environment names to mobile keys.
+   * The names cannot clash with {@link LaunchdarklyFlutterPlugin#DEFAULT_ENVIRONMENT}, the primary environment.
+   */
+  static Map<String, String> readSecondaryMobileKeys(Map<String, Object> config) {
+    final Object value = config.get("secondaryMobileKeys");
+    if (value == null) {
+      return null;
+    }
+    if (!(value instanceof Map)) {
+      throw new IllegalArgumentException("secondaryMobileKeys must be a Map, got " + value);
+    }
+    final Map<String, String> secondaryMobileKeys = new HashMap<>();
+    for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+      if (!(entry.getKey() instanceof String) || !(entry.getValue() instanceof String)) {
+        throw new IllegalArgumentException("secondaryMobileKeys must map names to mobile keys, got " + value);
+      }
+      if (LaunchdarklyFlutterPlugin.DEFAULT_ENVIRONMENT.equals(entry.getKey())) {
+        throw new IllegalArgumentException("secondaryMobileKeys cannot use the name " + entry.getKey());
+      }
+      secondaryMobileKeys.put((String) entry.getKey(), (String) entry.getValue());
+    }
+    return secondaryMobileKeys;
+  }
+
+  static Boolean readBoolean(Map<String, Object> config, String name) {
+    final Object value = config.get(name);
+    if (value == null) {
+      return null;
+    }
+    if (!(value instanceof Boolean)) {
+      throw new IllegalArgumentException(name + " must be a bool, got " + value);
+    }
+    return (Boolean) value;
+  }
+
+  private static Integer readInt(Map<String, Object> config, String name, int min) {
+    final Object value = config.get(name);
+    if (value == null) {
+      return null;
+    }
+    if (!(value instanceof Integer) && !(value instanceof Long)) {
+      throw new IllegalArgumentException(name + " must be an int, got " + value);
+    }
+    final long longValue = ((Number) value).longValue();
+    if (longValue < min || longValue > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(name + " must be between " + min + " and " + Integer.MAX_VALUE + ", got " + value);
+    }
+    return (int) longValue;
+  }
+}
@@ -0,0 +1,63 @@
+package com.oakam.launchdarkly_flutter;
+
+import com.launchdarkly.sdk.EvaluationDetail;
+import com.launchdarkly.sdk.EvaluationReason;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Converts {@link EvaluationDetail} results into maps for {@code StandardMessageCodec}:
+ * {@code value}, {@code variationIndex} (left out when there is none) and {@code reason}.
+ * Reasons only carry the properties that apply to their kind, like LaunchDarkly's JSON representation.
+ */
+final class EvaluationDetailEncoder {
+
+  private EvaluationDetailEncoder() {}
+
+  /** Encodes {@code detail}, whose value was already encoded as {@code value}. */
+  static Map<String, Object> encode(EvaluationDetail<?> detail, Object value) {
+    final Map<String, Object> encoded = new HashMap<>(4);
+    encoded.put("value", value);
+    if (detail.getVariationIndex() != EvaluationDetail.NO_VARIATION) {
+      encoded.put("variationIndex", detail.getVariationIndex());
+    }
+    encoded.put("reason", encodeReason(detail.getReason()));
+    return encoded;
+  }
+
+  /** Encodes an evaluation that failed with {@code errorKind} before reaching the SDK. */
+  static Map<String, Object> error(Object fallback, EvaluationReason.ErrorKind errorKind) {
+    final Map<String, Object> reason = new HashMap<>(2);
+    reason.put("kind", EvaluationReason.Kind.ERROR.name());
+    reason.put("errorKind", errorKind.name());
+
+    final Map<String, Object> encoded = new HashMap<>(2);
+    encoded.put("value", fallback);
+    encoded.put("reason", reason);
+    return encoded;
+  }
+
+  static Map<String, Object> encodeReason(EvaluationReason reason) {
+    if (reason == null) {
+      return null;
+    }
+    final Map<String, Object> encoded = new HashMap<>(4);
+    encoded.put("kind", reason.getKind().name());
+    switch (reason.getKind()) {
+      case RULE_MATCH:
+        encoded.put("ruleIndex", reason.getRuleIndex());
+        encoded.put("ruleId", reason.getRuleId());
+        break;
+      case PREREQUISITE_FAILED:
+        encoded.put("prerequisiteKey", reason.getPrerequisiteKey());
+        break;
+      case ERROR:
+        encoded.put("errorKind", reason.getErrorKind().name());
+        break;
+      default:
+        break;
+    }
+    return encoded;
+  }
+}
@@ -0,0 +1,103 @@
+package com.oakam.launchdarkly_flutter;
+
+import android.util.Log;
+
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.android.LDClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Hands custom events to the SDK on a background thread, so a batch of events never holds up method calls.
+ * Events are tracked in the order they arrive, and a flush runs after every event tracked before it.
+ * An event or flush the SDK fails on is logged and recorded in {@link PluginMetrics}, and the next ones still run.
+ */
+class EventTracker {
+
+  /** A custom event as sent by Dart. */
+  static final class Event {
+    final String name;
+    final LDValue data;
+    final Double metricValue;
+
+    Event(String name, LDValue data, Double metricValue) {
+      this.name = name;
+      this.data = data;
+      this.metricValue = metricValue;
+    }
+  }
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private final PluginMetrics metrics;
+
+  EventTracker(PluginMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Reads the events of a {@code trackMany} call. The whole batch is rejected when one event has no
+   * name or a metric value that is not a number.
+   */
+  static List<Event> decode(List<Map<String, Object>> events) {
+    final List<Event> decoded = new ArrayList<>(events.size());
+    for (Map<String, Object> event : events) {
+      final Object name = event.get("eventName");
+      if (!(name instanceof String)) {
+        throw new IllegalArgumentException("eventName must be a String, got " + name);
+      }
+      final Object metricValue = event.get("metricValue");
+      if (metricValue != null && !(metricValue instanceof Number)) {
+        throw new IllegalArgumentException("metricValue must be a number, got " + metricValue);
+      }
+      final Object data = event.get("data");
+      decoded.add(new Event((String) name,
+              data != null ? LDValueEncoder.decode(data) : null,
+              metricValue != null ? ((Number) metricValue).doubleValue() : null));
+    }
+    return decoded;
+  }
+
+  void track(final LDClient client, final List<Event> events) {
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        for (Event event : events) {
+          try {
+            if (event.metricValue != null) {
+              client.trackMetric(event.name, event.data != null ? event.data : LDValue.ofNull(), event.metricValue);
+            } else if (event.data != null) {
+              client.trackData(event.name, event.data);
+            } else {
+              client.track(event.name);
+            }
+          } catch (Exception e) {
+            metrics.recordFailedEvent();
+            Log.e("EventTracker", "Failed to track event " + event.name, e);
+          }
+        }
+      }
+    });
+  }
+
+  void flush(final LDClient client) {
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          client.flush();
+        } catch (Exception e) {
+          metrics.recordFailedFlush();
+          Log.e("EventTracker", "Failed to flush events", e);
+        }
+      }
+    });
+  }
+
+  void shutdown() {
+    executor.shutdown();
+  }
+}
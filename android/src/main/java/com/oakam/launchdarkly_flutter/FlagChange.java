@@ -0,0 +1,38 @@
+package com.oakam.launchdarkly_flutter;
+
+import com.launchdarkly.sdk.LDValue;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/** A flag change as observed by the plugin, with the values before and after the change. */
+final class FlagChange {
+
+  final String flagKey;
+  // null when the flag did not exist before the change.
+  final LDValue oldValue;
+  // null when the flag was deleted.
+  final LDValue newValue;
+
+  FlagChange(String flagKey, LDValue oldValue, LDValue newValue) {
+    this.flagKey = flagKey;
+    this.oldValue = oldValue;
+    this.newValue = newValue;
+  }
+
+  /** Collapses this change and a later change of the same flag into one. */
+  FlagChange followedBy(FlagChange later) {
+    return new FlagChange(flagKey, oldValue, later.newValue);
+  }
+
+  /** Encodes the change for {@code callbackFlagsChanged}. */
+  Map<String, Object> toMap() {
+    final Map<String, Object> change = new HashMap<>();
+    change.put("flagKey", flagKey);
+    change.put("type", newValue != null ? newValue.getType().name().toLowerCase(Locale.ROOT) : null);
+    change.put("value", LDValueEncoder.encode(newValue));
+    change.put("oldValue", LDValueEncoder.encode(oldValue));
+    return change;
+  }
+}
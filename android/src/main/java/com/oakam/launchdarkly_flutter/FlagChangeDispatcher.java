@@ -0,0 +1,83 @@
+package com.oakam.launchdarkly_flutter;
+
+import android.os.Handler;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Coalesces the flag changes reported by the SDK listeners, so that a streaming update touching
+ * many flags results in a single message to Dart per time window instead of one per flag.
+ * Several changes of the same flag within a window are collapsed into one.
+ * Pending changes are flushed on the given handler's thread.
+ */
+class FlagChangeDispatcher {
+
+  /**
+   * Receives the flag changes of a time window, along with the {@link FlagChangeLog} version
+   * the new values are at least as recent as, and the {@code System.nanoTime()} at which the
+   * first of them was observed.
+   */
+  interface Sink {
+    void onFlagsChanged(Collection<FlagChange> changes, long version, long observedAtNanos);
+  }
+
+  // About one frame at 60Hz.
+  static final long COALESCE_WINDOW_MILLIS = 16;
+
+  private final Handler handler;
+  private final Sink sink;
+  private Map<String, FlagChange> pendingChanges = new LinkedHashMap<>();
+  private long pendingVersion;
+  private long pendingSinceNanos;
+  private boolean flushScheduled;
+
+  private final Runnable flush = new Runnable() {
+    @Override
+    public void run() {
+      final Map<String, FlagChange> changes;
+      final long version;
+      final long observedAtNanos;
+      synchronized (FlagChangeDispatcher.this) {
+        changes = pendingChanges;
+        version = pendingVersion;
+        observedAtNanos = pendingSinceNanos;
+        pendingChanges = new LinkedHashMap<>();
+        flushScheduled = false;
+      }
+      if (!changes.isEmpty()) {
+        sink.onFlagsChanged(changes.values(), version, observedAtNanos);
+      }
+    }
+  };
+
+  FlagChangeDispatcher(Handler handler, Sink sink) {
+    this.handler = handler;
+    this.sink = sink;
+  }
+
+  /**
+   * Records flag changes read at {@code version} and observed at {@code observedAtNanos},
+   * may be called from any thread.
+   */
+  synchronized void enqueue(Collection<FlagChange> changes, long version, long observedAtNanos) {
+    pendingVersion = Math.max(pendingVersion, version);
+    for (FlagChange change : changes) {
+      final FlagChange pending = pendingChanges.get(change.flagKey);
+      pendingChanges.put(change.flagKey, pending != null ? pending.followedBy(change) : change);
+    }
+    if (!flushScheduled) {
+      flushScheduled = true;
+      pendingSinceNanos = observedAtNanos;
+      handler.postDelayed(flush, COALESCE_WINDOW_MILLIS);
+    }
+  }
+
+  /** Drops pending changes without sending them. */
+  synchronized void cancel() {
+    handler.removeCallbacks(flush);
+    pendingChanges.clear();
+    flushScheduled = false;
+  }
+}
@@ -0,0 +1,84 @@
+package com.oakam.launchdarkly_flutter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Records which flags changed at which snapshot version, so that Dart can ask for the flags
+ * changed since the version it last saw instead of converting every flag again.
+ * Versions only ever grow. Only the most recent changes are retained; callers
+ * asking about an older version are told to fall back to a full snapshot.
+ */
+class FlagChangeLog {
+
+  private static final int MAX_RETAINED_VERSIONS = 256;
+
+  private final TreeMap<Long, List<String>> changes = new TreeMap<>();
+  private long version = 0;
+  // Changes made after this version are all still in the log.
+  private long oldestKnownVersion = 0;
+
+  synchronized long getVersion() {
+    return version;
+  }
+
+  /** Records a change to {@code flagKeys} and returns the new snapshot version. */
+  synchronized long recordChanges(Collection<String> flagKeys) {
+    version++;
+    changes.put(version, new ArrayList<>(flagKeys));
+    while (changes.size() > MAX_RETAINED_VERSIONS) {
+      oldestKnownVersion = changes.pollFirstEntry().getKey();
+    }
+    return version;
+  }
+
+  /**
+   * Forgets every recorded change, e.g. when a new client is started and any flag may have changed.
+   * Returns the new snapshot version.
+   */
+  synchronized long invalidate() {
+    version++;
+    changes.clear();
+    oldestKnownVersion = version;
+    return version;
+  }
+
+  /**
+   * Returns the current version together with the keys of the flags changed after {@code sinceVersion}.
+   * The keys are {@code null} when {@code sinceVersion} is {@code null} or unknown and a full snapshot is needed.
+   */
+  synchronized Changes changesSince(Number sinceVersion) {
+    return new Changes(version, sinceVersion != null ? changedSince(sinceVersion.longValue()) : null);
+  }
+
+  /**
+   * Returns the keys of the flags changed after {@code sinceVersion},
+   * or {@code null} if that version is unknown and a full snapshot is needed.
+   */
+  synchronized Set<String> changedSince(long sinceVersion) {
+    if (sinceVersion < oldestKnownVersion || sinceVersion > version) {
+      return null;
+    }
+    final Set<String> flagKeys = new HashSet<>();
+    for (Map.Entry<Long, List<String>> change : changes.tailMap(sinceVersion, false).entrySet()) {
+      flagKeys.addAll(change.getValue());
+    }
+    return flagKeys;
+  }
+
+  static final class Changes {
+    final long version;
+    // null when every flag has to be sent.
+    final Set<String> flagKeys;
+
+    Changes(long version, Set<String> flagKeys) {
+      this.version = version;
+      this.flagKeys = flagKeys;
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package com.oakam.launchdarkly_flutter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import io.flutter.plugin.common.EventChannel;
+
+/**
+ * Streams flag changes to Dart over an {@link EventChannel} with flow control. Only one batch of
+ * changes is in flight at a time; Dart acknowledges each batch, and changes observed meanwhile wait
+ * in a bounded buffer. When the buffer is full, the {@link Overflow} policy chosen by the listener
+ * decides what is dropped. Every batch tells how many changes were dropped since the previous one.
+ */
+class FlagChangeStream implements EventChannel.StreamHandler {
+
+  enum Overflow {
+    /** Drops the oldest buffered change. */
+    DROP_OLDEST,
+    /** Keeps only the latest change of each flag, dropping the least recently changed flag when full. */
+    LATEST_PER_KEY,
+  }
+
+  static final int DEFAULT_CAPACITY = 256;
+
+  private final Executor deliveryExecutor;
+  private EventChannel.EventSink sink;
+  private Overflow overflow = Overflow.LATEST_PER_KEY;
+  private int capacity = DEFAULT_CAPACITY;
+  // Set when the listener asked for binary batches, renewed on each listen so keys are sent again.
+  private FlagPayloadCodec codec;
+  private final ArrayDeque<FlagChange> queuedChanges = new ArrayDeque<>();
+  private final LinkedHashMap<String, FlagChange> latestChanges = new LinkedHashMap<>();
+  private long version;
+  private long droppedChanges;
+  private boolean inFlight;
+  // Keys interned by the codec when the batch in flight was encoded, confirmed on acknowledge.
+  private int inFlightKeyCount;
+  private boolean deliveryScheduled;
+
+  private final Runnable deliver = new Runnable() {
+    @Override
+    public void run() {
+      final EventChannel.EventSink target;
+      final Map<String, Object> event;
+      synchronized (FlagChangeStream.this) {
+        deliveryScheduled = false;
+        target = sink;
+        if (target == null || inFlight || bufferedCount() == 0) {
+          return;
+        }
+        final List<FlagChange> changes = new ArrayList<>(bufferedCount());
+        changes.addAll(queuedChanges);
+        changes.addAll(latestChanges.values());
+        queuedChanges.clear();
+        latestChanges.clear();
+
+        if (codec != null) {
+          event = new HashMap<>();
+          event.put("payload", codec.encodeChanges(version, changes));
+          inFlightKeyCount = codec.keyCount();
+        } else {
+          event = LaunchdarklyFlutterPlugin.flagsChangedArguments(changes, version);
+        }
+        event.put("dropped", droppedChanges);
+        droppedChanges = 0;
+        inFlight = true;
+      }
+      target.success(event);
+    }
+  };
+
+  /** {@code deliveryExecutor} runs deliveries on the thread the event sink must be used from. */
+  FlagChangeStream(Executor deliveryExecutor) {
+    this.deliveryExecutor = deliveryExecutor;
+  }
+
+  /**
+   * Starts streaming. {@code arguments} may hold the {@code bufferSize}, the {@code overflow}
+   * policy, {@code dropOldest} or {@code latestPerKey}, and {@code binary} to receive the changes
+   * encoded by {@link FlagPayloadCodec#encodeChanges}.
+   */
+  @Override
+  public synchronized void onListen(Object arguments, EventChannel.EventSink events) {
+    overflow = Overflow.LATEST_PER_KEY;
+    capacity = DEFAULT_CAPACITY;
+    codec = null;
+    if (arguments instanceof Map) {
+      if (Boolean.TRUE.equals(((Map) arguments).get("binary"))) {
+        codec = new FlagPayloadCodec();
+      }
+      final Object bufferSize = ((Map) arguments).get("bufferSize");
+      if (bufferSize instanceof Number && ((Number) bufferSize).intValue() > 0) {
+        capacity = ((Number) bufferSize).intValue();
+      }
+      if ("dropOldest".equals(((Map) arguments).get("overflow"))) {
+        overflow = Overflow.DROP_OLDEST;
+      }
+    }
+    clear();
+    sink = events;
+  }
+
+  @Override
+  public synchronized void onCancel(Object arguments) {
+    sink = null;
+    clear();
+  }
+
+  synchronized boolean isListening() {
+    return sink != null;
+  }
+
+  /** Buffers flag changes read at {@code version}, may be called from any thread. */
+  synchronized void enqueue(Collection<FlagChange> changes, long version) {
+    if (sink == null) {
+      return;
+    }
+    this.version = Math.max(this.version, version);
+    for (FlagChange change : changes) {
+      if (overflow == Overflow.DROP_OLDEST) {
+        if (queuedChanges.size() == capacity) {
+          queuedChanges.pollFirst();
+          droppedChanges++;
+        }
+        queuedChanges.addLast(change);
+      } else {
+        // Re-inserted, so the iteration order stays from least to most recently changed.
+        final FlagChange pending = latestChanges.remove(change.flagKey);
+        if (pending == null && latestChanges.size() == capacity) {
+          final Iterator<FlagChange> oldest = latestChanges.values().iterator();
+          oldest.next();
+          oldest.remove();
+          droppedChanges++;
+        }
+        latestChanges.put(change.flagKey, pending != null ? pending.followedBy(change) : change);
+      }
+    }
+    scheduleDelivery();
+  }
+
+  /** Called when Dart received the batch in flight, so the next one can be sent. */
+  synchronized void acknowledge() {
+    if (inFlight && codec != null) {
+      codec.keysDelivered(inFlightKeyCount);
+    }
+    inFlight = false;
+    scheduleDelivery();
+  }
+
+  private void scheduleDelivery() {
+    if (!inFlight && !deliveryScheduled && bufferedCount() > 0) {
+      deliveryScheduled = true;
+      deliveryExecutor.execute(deliver);
+    }
+  }
+
+  private int bufferedCount() {
+    return queuedChanges.size() + latestChanges.size();
+  }
+
+  private void clear() {
+    queuedChanges.clear();
+    latestChanges.clear();
+    droppedChanges = 0;
+    inFlight = false;
+  }
+}
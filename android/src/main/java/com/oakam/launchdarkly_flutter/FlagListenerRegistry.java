@@ -0,0 +1,60 @@
+package com.oakam.launchdarkly_flutter;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps track of the Dart subscribers listening to flag changes. The plugin installs a single
+ * SDK listener and uses this registry to decide which changes to forward, so the SDK-side cost
+ * stays the same however many subscribers there are. A flag stays subscribed for as long as at
+ * least one subscriber listens to it.
+ */
+class FlagListenerRegistry {
+
+  private final Map<String, Set<String>> flagSubscribers = new HashMap<>();
+  private final Set<String> allFlagsSubscribers = new HashSet<>();
+
+  /** Returns {@code false} if the subscriber was already listening to the flag. */
+  synchronized boolean subscribe(String flagKey, String subscriberId) {
+    Set<String> subscribers = flagSubscribers.get(flagKey);
+    if (subscribers == null) {
+      subscribers = new HashSet<>();
+      flagSubscribers.put(flagKey, subscribers);
+    }
+    return subscribers.add(subscriberId);
+  }
+
+  /** Returns {@code false} if the subscriber was not listening to the flag. */
+  synchronized boolean unsubscribe(String flagKey, String subscriberId) {
+    final Set<String> subscribers = flagSubscribers.get(flagKey);
+    if (subscribers == null || !subscribers.remove(subscriberId)) {
+      return false;
+    }
+    if (subscribers.isEmpty()) {
+      flagSubscribers.remove(flagKey);
+    }
+    return true;
+  }
+
+  /** Returns {@code false} if the subscriber was already listening to all flags. */
+  synchronized boolean subscribeAll(String subscriberId) {
+    return allFlagsSubscribers.add(subscriberId);
+  }
+
+  /** Returns {@code false} if the subscriber was not listening to all flags. */
+  synchronized boolean unsubscribeAll(String subscriberId) {
+    return allFlagsSubscribers.remove(subscriberId);
+  }
+
+  /** Whether changes of the flag have to be forwarded to Dart. */
+  synchronized boolean isSubscribed(String flagKey) {
+    return !allFlagsSubscribers.isEmpty() || flagSubscribers.containsKey(flagKey);
+  }
+
+  synchronized void clear() {
+    flagSubscribers.clear();
+    allFlagsSubscribers.clear();
+  }
+}
@@ -0,0 +1,283 @@
+package com.oakam.launchdarkly_flutter;
+
+import com.launchdarkly.sdk.ArrayBuilder;
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.ObjectBuilder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary layout for the flag payloads sent over the {@code launchdarkly_flutter/flags} channel.
+ *
+ * <p>Flag keys are interned into integer ids, assigned once per session, and each reply only
+ * carries the keys of the ids the Dart side does not know yet. Values are written as a one byte
+ * tag followed by a packed payload. Integers are zig-zag varints and doubles are 8 big-endian bytes.
+ *
+ * <p>Request: op, known key count, and for {@link #OP_CHANGES_SINCE} the version to diff against.
+ * Reply: format, version, full flag, first new key id, new keys, then the entries (key id and value).
+ *
+ * <p>Flag changes pushed to Dart use the same key interning with {@link #FORMAT_CHANGES}, see
+ * {@link #encodeChanges}.
+ */
+final class FlagPayloadCodec {
+
+  static final byte OP_ALL_FLAGS = 1;
+  static final byte OP_CHANGES_SINCE = 2;
+
+  static final byte FORMAT = 1;
+  static final byte FORMAT_CHANGES = 2;
+
+  static final byte TAG_NULL = 0;
+  static final byte TAG_FALSE = 1;
+  static final byte TAG_TRUE = 2;
+  static final byte TAG_INT = 3;
+  static final byte TAG_DOUBLE = 4;
+  static final byte TAG_STRING = 5;
+  static final byte TAG_ARRAY = 6;
+  static final byte TAG_OBJECT = 7;
+  static final byte TAG_REMOVED = 8;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final Map<String, Integer> keyIds = new HashMap<>();
+  private final List<String> keys = new ArrayList<>();
+  // Number of keys the receiver of encodeChanges pushes confirmed, see keysDelivered.
+  private int pushedKeyCount;
+
+  /**
+   * Encodes {@code flagKeys} with their values from {@code flagValues}. Keys missing from
+   * {@code flagValues} are written as removed. {@code knownKeyCount} is the number of key ids the
+   * receiver already knows; a count this codec never handed out makes it resend every key.
+   */
+  synchronized ByteBuffer encode(long version, boolean full, Map<String, LDValue> flagValues,
+                                 Collection<String> flagKeys, int knownKeyCount) {
+    final Writer entries = new Writer();
+    entries.writeVarint(flagKeys.size());
+    for (String flagKey : flagKeys) {
+      entries.writeVarint(intern(flagKey));
+      final LDValue value = flagValues.get(flagKey);
+      if (value == null) {
+        entries.writeByte(TAG_REMOVED);
+      } else {
+        writeValue(entries, value);
+      }
+    }
+
+    // Written after the entries so that keys interned above are sent along.
+    final int firstNewKeyId = knownKeyCount >= 0 && knownKeyCount <= keys.size() ? knownKeyCount : 0;
+    final Writer header = new Writer();
+    header.writeByte(FORMAT);
+    header.writeVarint(version);
+    header.writeByte(full ? 1 : 0);
+    header.writeVarint(firstNewKeyId);
+    header.writeVarint(keys.size() - firstNewKeyId);
+    for (int id = firstNewKeyId; id < keys.size(); id++) {
+      header.writeString(keys.get(id));
+    }
+
+    // Platform channel replies must be direct buffers, positioned at the end of the message.
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(header.size + entries.size);
+    buffer.put(header.bytes, 0, header.size);
+    buffer.put(entries.bytes, 0, entries.size);
+    return buffer;
+  }
+
+  /**
+   * Encodes a batch of flag changes pushed to Dart: format, version, first new key id, new keys,
+   * then the entries (key id, new value, old value), where a missing value is written as removed.
+   * Pushes are not requested, so the keys sent along are those interned since the last push whose
+   * delivery was confirmed with {@link #keysDelivered}; until then, every push sends them again.
+   * An instance used for pushes must therefore serve a single ordered stream of messages.
+   */
+  synchronized byte[] encodeChanges(long version, Collection<FlagChange> changes) {
+    final Writer entries = new Writer();
+    entries.writeVarint(changes.size());
+    for (FlagChange change : changes) {
+      entries.writeVarint(intern(change.flagKey));
+      writeValueOrRemoved(entries, change.newValue);
+      writeValueOrRemoved(entries, change.oldValue);
+    }
+
+    final Writer header = new Writer();
+    header.writeByte(FORMAT_CHANGES);
+    header.writeVarint(version);
+    header.writeVarint(pushedKeyCount);
+    header.writeVarint(keys.size() - pushedKeyCount);
+    for (int id = pushedKeyCount; id < keys.size(); id++) {
+      header.writeString(keys.get(id));
+    }
+
+    final byte[] payload = Arrays.copyOf(header.bytes, header.size + entries.size);
+    System.arraycopy(entries.bytes, 0, payload, header.size, entries.size);
+    return payload;
+  }
+
+  /** Number of keys interned so far, which a push encoded now sends along or refers to. */
+  synchronized int keyCount() {
+    return keys.size();
+  }
+
+  /** Records that the receiver decoded a push encoded when {@link #keyCount()} was {@code keyCount}. */
+  synchronized void keysDelivered(int keyCount) {
+    pushedKeyCount = Math.max(pushedKeyCount, Math.min(keyCount, keys.size()));
+  }
+
+  private static void writeValueOrRemoved(Writer writer, LDValue value) {
+    if (value == null) {
+      writer.writeByte(TAG_REMOVED);
+    } else {
+      writeValue(writer, value);
+    }
+  }
+
+  static long readVarint(ByteBuffer buffer) {
+    long value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = buffer.get();
+      value |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+
+  private int intern(String flagKey) {
+    Integer id = keyIds.get(flagKey);
+    if (id == null) {
+      id = keys.size();
+      keys.add(flagKey);
+      keyIds.put(flagKey, id);
+    }
+    return id;
+  }
+
+  static void writeValue(Writer writer, LDValue value) {
+    switch (value.getType()) {
+      case BOOLEAN:
+        writer.writeByte(value.booleanValue() ? TAG_TRUE : TAG_FALSE);
+        break;
+      case NUMBER:
+        final double number = value.doubleValue();
+        if (LDValueEncoder.isSafeInteger(number)) {
+          writer.writeByte(TAG_INT);
+          final long integer = (long) number;
+          writer.writeVarint((integer << 1) ^ (integer >> 63));
+        } else {
+          writer.writeByte(TAG_DOUBLE);
+          writer.writeLong(Double.doubleToRawLongBits(number));
+        }
+        break;
+      case STRING:
+        writer.writeByte(TAG_STRING);
+        writer.writeString(value.stringValue());
+        break;
+      case ARRAY:
+        writer.writeByte(TAG_ARRAY);
+        writer.writeVarint(value.size());
+        for (LDValue element : value.values()) {
+          writeValue(writer, element);
+        }
+        break;
+      case OBJECT:
+        writer.writeByte(TAG_OBJECT);
+        writer.writeVarint(value.size());
+        for (String key : value.keys()) {
+          writer.writeString(key);
+          writeValue(writer, value.get(key));
+        }
+        break;
+      default:
+        writer.writeByte(TAG_NULL);
+        break;
+    }
+  }
+
+  /** Reads a value written by {@link #writeValue}. */
+  static LDValue readValue(ByteBuffer buffer) {
+    final byte tag = buffer.get();
+    switch (tag) {
+      case TAG_FALSE:
+        return LDValue.of(false);
+      case TAG_TRUE:
+        return LDValue.of(true);
+      case TAG_INT:
+        final long zigzag = readVarint(buffer);
+        return LDValue.of((zigzag >>> 1) ^ -(zigzag & 1));
+      case TAG_DOUBLE:
+        return LDValue.of(Double.longBitsToDouble(buffer.getLong()));
+      case TAG_STRING:
+        return LDValue.of(readString(buffer));
+      case TAG_ARRAY:
+        final ArrayBuilder array = LDValue.buildArray();
+        for (long i = readVarint(buffer); i > 0; i--) {
+          array.add(readValue(buffer));
+        }
+        return array.build();
+      case TAG_OBJECT:
+        final ObjectBuilder object = LDValue.buildObject();
+        for (long i = readVarint(buffer); i > 0; i--) {
+          final String key = readString(buffer);
+          object.put(key, readValue(buffer));
+        }
+        return object.build();
+      case TAG_NULL:
+        return LDValue.ofNull();
+      default:
+        throw new IllegalArgumentException("Unknown value tag " + tag);
+    }
+  }
+
+  static String readString(ByteBuffer buffer) {
+    final byte[] utf8 = new byte[(int) readVarint(buffer)];
+    buffer.get(utf8);
+    return new String(utf8, UTF_8);
+  }
+
+  static final class Writer {
+    byte[] bytes = new byte[256];
+    int size;
+
+    void writeByte(int b) {
+      ensureCapacity(1);
+      bytes[size++] = (byte) b;
+    }
+
+    void writeVarint(long value) {
+      ensureCapacity(10);
+      while ((value & ~0x7FL) != 0) {
+        bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      bytes[size++] = (byte) value;
+    }
+
+    void writeLong(long value) {
+      ensureCapacity(8);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        bytes[size++] = (byte) (value >>> shift);
+      }
+    }
+
+    void writeString(String value) {
+      final byte[] utf8 = value.getBytes(UTF_8);
+      writeVarint(utf8.length);
+      ensureCapacity(utf8.length);
+      System.arraycopy(utf8, 0, bytes, size, utf8.length);
+      size += utf8.length;
+    }
+
+    private void ensureCapacity(int extra) {
+      if (size + extra > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+      }
+    }
+  }
+}
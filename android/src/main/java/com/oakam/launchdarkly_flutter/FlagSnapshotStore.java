@@ -0,0 +1,184 @@
+package com.oakam.launchdarkly_flutter;
+
+import android.util.Log;
+
+import com.launchdarkly.sdk.LDValue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps the last known flag values of each user in app-private files, so they can be served on the
+ * next launch before the client has started.
+ *
+ * <p>A snapshot is a format byte, the flag count and then each flag key and value, written the way
+ * {@link FlagPayloadCodec} writes them. Saves run on a background thread; saves requested while one
+ * is in progress are coalesced so that only the latest values of each user are written.
+ */
+class FlagSnapshotStore {
+
+  static final byte FORMAT = 1;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final File directory;
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private final Map<String, Map<String, LDValue>> pendingSnapshots = new LinkedHashMap<>();
+  private boolean writeScheduled;
+
+  private final Runnable write = new Runnable() {
+    @Override
+    public void run() {
+      while (true) {
+        final Map.Entry<String, Map<String, LDValue>> snapshot;
+        synchronized (FlagSnapshotStore.this) {
+          if (pendingSnapshots.isEmpty()) {
+            writeScheduled = false;
+            return;
+          }
+          final String userKey = pendingSnapshots.keySet().iterator().next();
+          snapshot = new AbstractMap.SimpleEntry<>(userKey, pendingSnapshots.remove(userKey));
+        }
+        try {
+          write(snapshot.getKey(), snapshot.getValue());
+        } catch (IOException e) {
+          Log.w("FlagSnapshotStore", "Failed to save flag snapshot", e);
+        }
+      }
+    }
+  };
+
+  FlagSnapshotStore(File directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Returns the saved flag values of {@code userKey}, or an empty map if there are none.
+   * Values still waiting to be written are returned over those on disk.
+   */
+  Map<String, LDValue> load(String userKey) {
+    synchronized (this) {
+      final Map<String, LDValue> pending = pendingSnapshots.get(userKey);
+      if (pending != null) {
+        return pending;
+      }
+    }
+    final File file = fileFor(userKey);
+    if (!file.isFile()) {
+      return Collections.emptyMap();
+    }
+    try {
+      return decode(ByteBuffer.wrap(readFully(file)));
+    } catch (IOException | RuntimeException e) {
+      Log.w("FlagSnapshotStore", "Ignoring unreadable flag snapshot", e);
+      return Collections.emptyMap();
+    }
+  }
+
+  /** Saves the flag values of {@code userKey} in the background. */
+  synchronized void save(String userKey, Map<String, LDValue> flagValues) {
+    pendingSnapshots.put(userKey, flagValues);
+    if (!writeScheduled) {
+      writeScheduled = true;
+      executor.execute(write);
+    }
+  }
+
+  /** Lets pending saves finish, then stops the background thread. */
+  void shutdown() {
+    executor.shutdown();
+  }
+
+  static byte[] encode(Map<String, LDValue> flagValues) {
+    final FlagPayloadCodec.Writer writer = new FlagPayloadCodec.Writer();
+    writer.writeByte(FORMAT);
+    writer.writeVarint(flagValues.size());
+    for (Map.Entry<String, LDValue> flag : flagValues.entrySet()) {
+      writer.writeString(flag.getKey());
+      FlagPayloadCodec.writeValue(writer, flag.getValue());
+    }
+    return Arrays.copyOf(writer.bytes, writer.size);
+  }
+
+  static Map<String, LDValue> decode(ByteBuffer buffer) {
+    if (buffer.get() != FORMAT) {
+      return Collections.emptyMap();
+    }
+    final int count = (int) FlagPayloadCodec.readVarint(buffer);
+    final Map<String, LDValue> flagValues = new HashMap<>((int) (count / 0.75f) + 1);
+    for (int i = 0; i < count; i++) {
+      final String flagKey = FlagPayloadCodec.readString(buffer);
+      flagValues.put(flagKey, FlagPayloadCodec.readValue(buffer));
+    }
+    return flagValues;
+  }
+
+  private void write(String userKey, Map<String, LDValue> flagValues) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create " + directory);
+    }
+    final File file = fileFor(userKey);
+    // Written next to the snapshot and renamed over it, so a crash never leaves a partial snapshot.
+    final File temporaryFile = new File(directory, file.getName() + ".tmp");
+    final FileOutputStream output = new FileOutputStream(temporaryFile);
+    try {
+      output.write(encode(flagValues));
+    } finally {
+      output.close();
+    }
+    if (!temporaryFile.renameTo(file)) {
+      temporaryFile.delete();
+      throw new IOException("Cannot replace " + file);
+    }
+  }
+
+  private File fileFor(String userKey) {
+    return new File(directory, "flags-" + hash(userKey) + ".bin");
+  }
+
+  private static String hash(String userKey) {
+    try {
+      final byte[] digest = MessageDigest.getInstance("SHA-256").digest(userKey.getBytes(UTF_8));
+      final StringBuilder hex = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static byte[] readFully(File file) throws IOException {
+    final byte[] bytes = new byte[(int) file.length()];
+    final InputStream input = new FileInputStream(file);
+    try {
+      int offset = 0;
+      while (offset < bytes.length) {
+        final int read = input.read(bytes, offset, bytes.length - offset);
+        if (read < 0) {
+          throw new IOException("Unexpected end of " + file);
+        }
+        offset += read;
+      }
+    } finally {
+      input.close();
+    }
+    return bytes;
+  }
+}
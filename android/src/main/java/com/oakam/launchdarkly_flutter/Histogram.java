@@ -0,0 +1,62 @@
+package com.oakam.launchdarkly_flutter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative values with power of two buckets: bucket {@code i} counts
+ * the values in {@code [2^i, 2^(i+1))}, except bucket 0, which also counts 0.
+ */
+class Histogram {
+
+  private final AtomicLongArray buckets = new AtomicLongArray(64);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  void record(long value) {
+    buckets.incrementAndGet(value <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(value));
+    count.incrementAndGet();
+    sum.addAndGet(value);
+    long currentMax = max.get();
+    while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+      currentMax = max.get();
+    }
+  }
+
+  long getCount() {
+    return count.get();
+  }
+
+  void reset() {
+    for (int i = 0; i < buckets.length(); i++) {
+      buckets.set(i, 0);
+    }
+    count.set(0);
+    sum.set(0);
+    max.set(0);
+  }
+
+  /** Returns {@code count}, {@code sum}, {@code max} and the {@code buckets} up to the last non-empty one. */
+  Map<String, Object> toMap() {
+    int lastBucket = buckets.length() - 1;
+    while (lastBucket >= 0 && buckets.get(lastBucket) == 0) {
+      lastBucket--;
+    }
+    final List<Long> bucketCounts = new ArrayList<>(lastBucket + 1);
+    for (int i = 0; i <= lastBucket; i++) {
+      bucketCounts.add(buckets.get(i));
+    }
+
+    final Map<String, Object> histogram = new HashMap<>(4);
+    histogram.put("count", count.get());
+    histogram.put("sum", sum.get());
+    histogram.put("max", max.get());
+    histogram.put("buckets", bucketCounts);
+    return histogram;
+  }
+}
@@ -0,0 +1,124 @@
+package com.oakam.launchdarkly_flutter;
+
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+/**
+ * Applies identify calls one at a time and replies once the new user's flags are loaded.
+ * While an identify is in flight, newer calls replace each other, so only the most recent one is
+ * applied next and the flags of superseded users are never fetched. Superseded calls reply
+ * {@code false}, as do calls whose timeout expires before the flags are loaded.
+ * A call's {@code onIdentified} callback runs once its flags are loaded, even after its timeout.
+ */
+class IdentifyCoordinator {
+
+  // Upper bound on how long a pending identify waits for the one in flight to complete.
+  private static final long MAX_IDENTIFY_WAIT_MILLIS = 30000;
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private Request pending;
+  private boolean inFlight;
+
+  private final Runnable drain = new Runnable() {
+    @Override
+    public void run() {
+      while (true) {
+        final Request request;
+        synchronized (IdentifyCoordinator.this) {
+          request = pending;
+          pending = null;
+          if (request == null) {
+            inFlight = false;
+            return;
+          }
+        }
+        apply(request);
+      }
+    }
+  };
+
+  /**
+   * Queues an identify. {@code identify} starts it and returns the SDK's completion future;
+   * it is only called if no later identify supersedes this one first. {@code onIdentified} is called,
+   * on the coordinator's thread, once that future has completed successfully.
+   * A {@code timeoutMillis} of 0 replies {@code false} at once unless the flags are already loaded,
+   * and a negative one waits until they are.
+   */
+  synchronized void identify(Callable<Future<Void>> identify, Runnable onIdentified, long timeoutMillis, Result result) {
+    if (pending != null) {
+      pending.result.success(false);
+    }
+    pending = new Request(identify, onIdentified, timeoutMillis, result);
+    if (!inFlight) {
+      inFlight = true;
+      executor.execute(drain);
+    }
+  }
+
+  /** Whether an identify has been started or queued and has not finished yet. */
+  synchronized boolean isIdentifying() {
+    return inFlight;
+  }
+
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private static void apply(Request request) {
+    boolean replied = false;
+    try {
+      final Future<Void> identified = request.identify.call();
+      final long timeoutMillis = request.timeoutMillis >= 0 ? Math.min(request.timeoutMillis, MAX_IDENTIFY_WAIT_MILLIS) : MAX_IDENTIFY_WAIT_MILLIS;
+      try {
+        identified.get(timeoutMillis, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        request.result.success(false);
+        replied = true;
+        // Keep the next identify from starting before this one is applied.
+        identified.get(MAX_IDENTIFY_WAIT_MILLIS - timeoutMillis, TimeUnit.MILLISECONDS);
+      }
+      request.onIdentified.run();
+      if (!replied) {
+        request.result.success(true);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      if (!replied) {
+        request.result.error("identify interrupted", null, null);
+      }
+    } catch (ExecutionException e) {
+      if (!replied) {
+        request.result.error("identify failed", e.getCause() != null ? e.getCause().getMessage() : null, null);
+      }
+    } catch (TimeoutException e) {
+      Log.w("IdentifyCoordinator", "identify did not complete, applying the next one anyway");
+    } catch (Exception e) {
+      if (!replied) {
+        request.result.error("identify failed", e.getMessage(), null);
+      }
+    }
+  }
+
+  private static final class Request {
+    final Callable<Future<Void>> identify;
+    final Runnable onIdentified;
+    final long timeoutMillis;
+    final Result result;
+
+    Request(Callable<Future<Void>> identify, Runnable onIdentified, long timeoutMillis, Result result) {
+      this.identify = identify;
+      this.onIdentified = onIdentified;
+      this.timeoutMillis = timeoutMillis;
+      this.result = result;
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package com.oakam.launchdarkly_flutter;
+
+import com.launchdarkly.sdk.ArrayBuilder;
+import com.launchdarkly.sdk.LDValue;
+import com.launchdarkly.sdk.ObjectBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts between {@link LDValue} and the types {@code StandardMessageCodec} understands
+ * ({@code null}, Boolean, Integer, Long, Double, String, List and Map), without losing
+ * precision and without going through intermediate JSON strings.
+ */
+final class LDValueEncoder {
+
+  // Beyond 2^53 a double no longer holds every integer, so such values are sent as doubles.
+  private static final double MAX_SAFE_INTEGER = 9007199254740992d;
+
+  private LDValueEncoder() {}
+
+  /** Encodes every flag of an {@code allFlags()} snapshot, keeping ARRAY and OBJECT flags. */
+  static Map<String, Object> encodeAll(Map<String, LDValue> flagValues) {
+    final Map<String, Object> encoded = new HashMap<>(capacityFor(flagValues.size()));
+    for (Map.Entry<String, LDValue> flag : flagValues.entrySet()) {
+      encoded.put(flag.getKey(), encode(flag.getValue()));
+    }
+    return encoded;
+  }
+
+  static Object encode(LDValue value) {
+    if (value == null) {
+      return null;
+    }
+    switch (value.getType()) {
+      case BOOLEAN:
+        return value.booleanValue() ? Boolean.TRUE : Boolean.FALSE;
+      case NUMBER:
+        return encodeNumber(value.doubleValue());
+      case STRING:
+        return value.stringValue();
+      case ARRAY:
+        final List<Object> list = new ArrayList<>(value.size());
+        for (LDValue element : value.values()) {
+          list.add(encode(element));
+        }
+        return list;
+      case OBJECT:
+        final Map<String, Object> map = new HashMap<>(capacityFor(value.size()));
+        for (String key : value.keys()) {
+          map.put(key, encode(value.get(key)));
+        }
+        return map;
+      default:
+        return null;
+    }
+  }
+
+  /** Builds an {@link LDValue} from a value decoded by {@code StandardMessageCodec}. */
+  static LDValue decode(Object value) {
+    if (value instanceof Boolean) {
+      return LDValue.of((Boolean) value);
+    } else if (value instanceof Integer || value instanceof Long) {
+      return LDValue.of(((Number) value).longValue());
+    } else if (value instanceof Number) {
+      return LDValue.of(((Number) value).doubleValue());
+    } else if (value instanceof String) {
+      return LDValue.of((String) value);
+    } else if (value instanceof List) {
+      final ArrayBuilder builder = LDValue.buildArray();
+      for (Object element : (List<?>) value) {
+        builder.add(decode(element));
+      }
+      return builder.build();
+    } else if (value instanceof Map) {
+      final ObjectBuilder builder = LDValue.buildObject();
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        builder.put(String.valueOf(entry.getKey()), decode(entry.getValue()));
+      }
+      return builder.build();
+    }
+    return LDValue.ofNull();
+  }
+
+  /** Whether {@code number} is integral and small enough to be sent as an integer without losing precision. */
+  static boolean isSafeInteger(double number) {
+    return number == Math.rint(number) && Math.abs(number) <= MAX_SAFE_INTEGER;
+  }
+
+  private static Object encodeNumber(double number) {
+    if (isSafeInteger(number)) {
+      if (number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE) {
+        return Integer.valueOf((int) number);
+      }
+      return Long.valueOf((long) number);
+    }
+    return number;
+  }
+
+  private static int capacityFor(int size) {
+    // Sized so that the map never rehashes while it is being filled.
+    return (int) (size / 0.75f) + 1;
+  }
+}
@@ -1,6 +1,8 @@
 package com.oakam.launchdarkly_flutter;
 
 import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
@@ -8,54 +10,160 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
 
+import com.launchdarkly.sdk.EvaluationDetail;
+import com.launchdarkly.sdk.EvaluationReason;
 import com.launchdarkly.sdk.LDUser;
 import com.launchdarkly.sdk.LDValue;
-import com.launchdarkly.sdk.UserAttribute;
-import com.launchdarkly.sdk.android.FeatureFlagChangeListener;
+import com.launchdarkly.sdk.LDValueType;
 import com.launchdarkly.sdk.android.LDAllFlagsListener;
 import com.launchdarkly.sdk.android.LDClient;
 import com.launchdarkly.sdk.android.LDConfig;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import io.flutter.embedding.engine.plugins.FlutterPlugin;
 import io.flutter.embedding.engine.plugins.activity.ActivityAware;
 import io.flutter.embedding.engine.plugins.activity.ActivityPluginBinding;
+import io.flutter.plugin.common.BasicMessageChannel;
+import io.flutter.plugin.common.BinaryCodec;
 import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
 import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
 import io.flutter.plugin.common.MethodChannel.Result;
+import io.flutter.plugin.common.StandardMethodCodec;
 import io.flutter.plugin.common.PluginRegistry.Registrar;
 
 /** LaunchdarklyFlutterPlugin */
 public class LaunchdarklyFlutterPlugin implements FlutterPlugin, ActivityAware, MethodCallHandler {
 
+  private static final long DEFAULT_INIT_TIMEOUT_MILLIS = 5000;
+  // How long a resumed client gets to fetch its flags before the diff is sent anyway.
+  private static final long RESUME_UPDATE_TIMEOUT_MILLIS = 5000;
+
+  static final String INIT_STATUS_NETWORK = "network";
+  static final String INIT_STATUS_CACHE = "cache";
+  static final String INIT_STATUS_TIMEOUT = "timeout";
+  // Name the SDK gives to the environment of the primary mobile key.
+  static final String DEFAULT_ENVIRONMENT = "default";
+
   private MethodChannel channel;
-  private Activity activity;
-  private LDClient ldClient;
-  private final Map<String, FeatureFlagChangeListener> listeners = new HashMap<>();
-  private final Map<String, LDAllFlagsListener> allFlagsListeners = new HashMap<>();
+  private BasicMessageChannel<ByteBuffer> flagsChannel;
+  private EventChannel flagChangesChannel;
+  private volatile Activity activity;
+  private volatile Context applicationContext;
+  private FlagSnapshotStore flagSnapshotStore;
+  // Flag values saved by a previous launch, served until the client has started.
+  private volatile Map<String, LDValue> storedFlagValues = Collections.emptyMap();
+  private volatile String currentUserKey;
+  private volatile LDUser currentUser;
+  // Config of the last init, kept to restart the client in another connection mode.
+  private LDConfig.Builder configBuilder;
+  private volatile boolean streaming = true;
+  private volatile boolean offlineRequested;
+  private volatile boolean pauseInBackground;
+  // Set while the connection is paused in the background. Flag changes are then only recorded in the
+  // change log, and Dart hears about them as one diff on resume.
+  private volatile boolean paused;
+  // Set from resume until the client's first flag update, or RESUME_UPDATE_TIMEOUT_MILLIS, so the
+  // diff Dart gets is made against the fetched flags rather than those cached before the pause.
+  private volatile boolean resuming;
+  // Ends a resume whose first flag update did not come in time; cancelled when the resume ends otherwise.
+  private final Runnable resumeTimeout = new Runnable() {
+    @Override
+    public void run() {
+      finishResume();
+    }
+  };
+  private Application trackedApplication;
+  private final AppVisibilityTracker visibilityTracker = new AppVisibilityTracker(new AppVisibilityTracker.Listener() {
+    @Override
+    public void onForeground() {
+      resumeConnection();
+    }
+
+    @Override
+    public void onBackground() {
+      if (pauseInBackground) {
+        pauseConnection();
+      }
+    }
+  });
+  private Handler mainHandler;
+  private FlagChangeDispatcher flagChangeDispatcher;
+  private FlagChangeStream flagChangeStream;
+  private final ExecutorService initExecutor = Executors.newSingleThreadExecutor();
+  // Only used when the engine cannot provide a background task queue.
+  private ExecutorService methodCallExecutor;
+  // Only assigned once the client has finished starting (or timed out), so flag reads never block on init.
+  private volatile LDClient ldClient;
+  // Names of the secondary environments of the last init, and their clients once it has finished.
+  private volatile Set<String> environmentNames = Collections.emptySet();
+  private volatile Map<String, LDClient> environmentClients = Collections.emptyMap();
+  private final FlagListenerRegistry listenerRegistry = new FlagListenerRegistry();
+  // Method name to handler, filled in once by the constructor.
+  private final Map<String, MethodCallHandler> methodHandlers = new HashMap<>();
+  private final PluginMetrics metrics = new PluginMetrics();
+  private final IdentifyCoordinator identifyCoordinator = new IdentifyCoordinator();
+  private final EventTracker eventTracker = new EventTracker(metrics);
+  private final UserCache userCache = new UserCache();
+  private final FlagChangeLog flagChangeLog = new FlagChangeLog();
+  // The last value seen for each flag, so that change notifications can carry the previous value.
+  private final Map<String, LDValue> observedFlagValues = new ConcurrentHashMap<>();
+  private final FlagPayloadCodec flagPayloadCodec = new FlagPayloadCodec();
+  // Set while Dart wants binary callbackFlagsChanged messages, with its own keys as pushes are not requested.
+  private volatile FlagPayloadCodec flagChangeCodec;
+  // The only listener the plugin registers with the SDK, whatever Dart subscribes to.
+  private final LDAllFlagsListener flagChangeListener = new LDAllFlagsListener() {
+    @Override
+    public void onChange(List<String> flagKeys) {
+      flagChangeLog.recordChanges(flagKeys);
+      if (resuming) {
+        finishResume();
+      } else {
+        observeFlagChanges(flagKeys);
+      }
+    }
+  };
 
-  public LaunchdarklyFlutterPlugin() {}
+  public LaunchdarklyFlutterPlugin() {
+    registerMethodHandlers();
+  }
 
   public LaunchdarklyFlutterPlugin(Activity activity){
+    this();
     this.activity = activity;
   }
 
   public static void registerWith(Registrar registrar) {
     final LaunchdarklyFlutterPlugin launchdarklyFlutterPlugin = new LaunchdarklyFlutterPlugin(registrar.activity());
+    launchdarklyFlutterPlugin.setApplicationContext(registrar.context().getApplicationContext());
     launchdarklyFlutterPlugin.setupChannel(registrar.messenger());
   }
 
   @Override
   public void onAttachedToEngine(@NonNull FlutterPluginBinding flutterPluginBinding) {
+    setApplicationContext(flutterPluginBinding.getApplicationContext());
     setupChannel(flutterPluginBinding.getBinaryMessenger());
   }
 
@@ -63,221 +171,1080 @@ public class LaunchdarklyFlutterPlugin implements FlutterPlugin, ActivityAware,
   public void onDetachedFromEngine(@NonNull FlutterPluginBinding binding) {
     channel.setMethodCallHandler(null);
     channel = null;
+    flagsChannel.setMessageHandler(null);
+    flagsChannel = null;
+    flagChangesChannel.setStreamHandler(null);
+    flagChangesChannel = null;
+    flagChangeStream.onCancel(null);
+    flagChangeDispatcher.cancel();
+    // The next engine's Dart side starts with no known keys.
+    flagChangeCodec = null;
+    listenerRegistry.clear();
+    stopTrackingVisibility();
+    initExecutor.shutdownNow();
+    identifyCoordinator.shutdown();
+    eventTracker.shutdown();
+    if (flagSnapshotStore != null) {
+      flagSnapshotStore.shutdown();
+    }
+    if (methodCallExecutor != null) {
+      methodCallExecutor.shutdownNow();
+    }
 
-    try {
-      if (ldClient != null){
-        ldClient.close();
-      }
-    } catch (IOException e) {
-      e.printStackTrace();
+    final LDClient client = ldClient;
+    if (client != null) {
+      closeClient(client);
     }
   }
 
+  private void setApplicationContext(Context context) {
+    applicationContext = context;
+    flagSnapshotStore = new FlagSnapshotStore(new File(context.getNoBackupFilesDir(), "launchdarkly_flutter"));
+  }
+
   @Override
   public void onAttachedToActivity(ActivityPluginBinding binding) {
-    activity = binding.getActivity();
+    attachActivity(binding.getActivity());
   }
 
   @Override
   public void onDetachedFromActivityForConfigChanges() {
-
+    // The tracker keeps counting across the recreation, so the app does not seem to go to the background.
   }
 
   @Override
   public void onReattachedToActivityForConfigChanges(ActivityPluginBinding binding) {
-
+    attachActivity(binding.getActivity());
   }
 
   @Override
   public void onDetachedFromActivity() {
+    stopTrackingVisibility();
+  }
+
+  private void attachActivity(Activity activity) {
+    this.activity = activity;
+    if (trackedApplication == null) {
+      trackedApplication = activity.getApplication();
+      trackedApplication.registerActivityLifecycleCallbacks(visibilityTracker);
+    }
+  }
 
+  private void stopTrackingVisibility() {
+    if (trackedApplication != null) {
+      trackedApplication.unregisterActivityLifecycleCallbacks(visibilityTracker);
+      trackedApplication = null;
+    }
   }
 
   @VisibleForTesting
   LDUser createUser(@NonNull MethodCall call) {
+    final String userKey = call.argument("userKey");
+    final Map<String, String> userMap = call.argument("user");
+    final Map<String, Object> custom = call.argument("custom");
+    final List<String> privateAttributes = call.argument("privateAttributes");
+
+    final List<Object> arguments = Arrays.<Object>asList(userKey, userMap, custom, privateAttributes);
+    final LDUser cachedUser = userCache.get(arguments);
+    if (cachedUser != null) {
+      return cachedUser;
+    }
+
     LDUser.Builder userBuilder;
 
-    if (call.hasArgument("userKey")) {
-      String userKey = call.argument("userKey");
+    if (userKey != null) {
       userBuilder = new LDUser.Builder(userKey).anonymous(false);
     } else {
-      userBuilder = new LDUser.Builder(UUID.randomUUID().toString()).anonymous(true);
+      userBuilder = new LDUser.Builder(userCache.getAnonymousUserKey(applicationContext)).anonymous(true);
     }
 
-    List<String> privateAttributes = call.argument("privateAttributes");
-    if (privateAttributes == null) {
-      privateAttributes = new ArrayList<>();
-    }
+    final Set<String> privateAttributeKeys = privateAttributes != null ? new HashSet<>(privateAttributes) : Collections.<String>emptySet();
 
-    Map<String, String> userMap = call.argument("user");
     if (userMap != null) {
-      populateBuiltInAttributes(userBuilder, userMap, privateAttributes);
+      populateBuiltInAttributes(userBuilder, userMap, privateAttributeKeys);
     }
 
-    Map<String, Object> custom = call.argument("custom");
     if (custom != null) {
-      populateCustomAttributes(userBuilder, custom, privateAttributes);
+      populateCustomAttributes(userBuilder, custom, privateAttributeKeys);
     }
 
-    return userBuilder.build();
+    final LDUser user = userBuilder.build();
+    userCache.put(arguments, user);
+    return user;
   }
 
   @Override
   public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+    final MethodCallHandler handler = methodHandlers.get(call.method);
+    if (handler == null) {
+      result.notImplemented();
+      return;
+    }
+    final Result instrumentedResult = metrics.instrument(call.method, result);
+    final String environment = call.argument("environment");
+    if (environment != null && !DEFAULT_ENVIRONMENT.equals(environment) && !environmentNames.contains(environment)) {
+      instrumentedResult.error("unknown environment", environment, null);
+      return;
+    }
+    handler.onMethodCall(call, instrumentedResult);
+  }
+
+  /**
+   * Makes {@code handler} answer the calls of {@code method}, replacing any handler registered before.
+   * Handlers are looked up by method name, so adding methods does not slow down dispatch.
+   */
+  @VisibleForTesting
+  void registerMethodHandler(String method, MethodCallHandler handler) {
+    methodHandlers.put(method, handler);
+  }
 
-    if(call.method.equals("init")){
+  private void registerMethodHandlers() {
+    final MethodCallHandler init = new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        String mobileKey = call.argument("mobileKey");
 
-      String mobileKey = call.argument("mobileKey");
+        if(mobileKey == null){
+          result.error("mobileKey null", null, null);
+          return;
+        }
 
-      if(mobileKey == null){
-        result.error("mobileKey null", null, null);
-        return;
-      }
+        Map<String, Object> config = call.argument("config");
+        try {
+          configBuilder = ConfigMapReader.read(mobileKey, config);
+        } catch (IllegalArgumentException e) {
+          result.error("invalid config", e.getMessage(), null);
+          return;
+        }
+        // Each init starts from its own config; a mode set by an earlier init or setConnectionMode does not carry over.
+        final Boolean stream = config != null ? ConfigMapReader.readBoolean(config, "stream") : null;
+        streaming = stream != null ? stream : true;
+        final Map<String, String> secondaryMobileKeys = config != null ? ConfigMapReader.readSecondaryMobileKeys(config) : null;
+        environmentNames = secondaryMobileKeys != null ? new HashSet<>(secondaryMobileKeys.keySet()) : Collections.<String>emptySet();
 
-      LDConfig.Builder ldConfigBuilder = new LDConfig.Builder()
-              .mobileKey(mobileKey);
+        final LDClient previousClient = ldClient;
+        if (previousClient != null) {
+          // Initializing again replaces the client instead of leaking it.
+          closeClient(previousClient);
+        }
+        LDConfig ldConfig = buildConfig();
+
+        long timeoutMillis = DEFAULT_INIT_TIMEOUT_MILLIS;
+        final Number requestedTimeout = call.argument("timeoutMillis");
+        if (requestedTimeout != null && requestedTimeout.longValue() >= 0) {
+          timeoutMillis = requestedTimeout.longValue();
+        }
+
+        final LDUser user = createUser(call);
+        currentUser = user;
+        restoreFlagSnapshot(user.getKey());
+        initClient(ldConfig, user, timeoutMillis, call.method.equals("initAsync"), result);
+      }
+    };
+    registerMethodHandler("init", init);
+    registerMethodHandler("initAsync", init);
 
-      Map<String, Object> config = call.argument("config");
-      if (config != null) {
-        final Object allAttributesPrivate = config.get("allAttributesPrivate");
-        if (allAttributesPrivate instanceof Boolean && (Boolean) allAttributesPrivate) {
-          ldConfigBuilder.allAttributesPrivate();
+    registerMethodHandler("identify", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        if (ldClient == null) {
+          result.error("client not initialized", null, null);
+          return;
         }
-        final Object privateAttributes = config.get("privateAttributes");
-        if (privateAttributes instanceof List) {
-          final List<UserAttribute> userAttributes = new ArrayList<>();
-          for (Object privateAttribute : (List) privateAttributes) {
-            if (privateAttribute instanceof String) {
-              userAttributes.add(UserAttribute.forName((String) privateAttribute));
+        final LDClient client = ldClient;
+        final LDUser user = createUser(call);
+        final Number timeoutMillis = call.argument("timeoutMillis");
+        identifyCoordinator.identify(new Callable<Future<Void>>() {
+          @Override
+          public Future<Void> call() {
+            return client.identify(user);
+          }
+        }, new Runnable() {
+          @Override
+          public void run() {
+            // Only now is the client's user the new one; a superseded or failed identify leaves them as they were.
+            currentUser = user;
+            currentUserKey = user.getKey();
+            if (flagSnapshotStore != null && user.getKey() != null) {
+              flagSnapshotStore.save(user.getKey(), client.allFlags());
             }
           }
-          ldConfigBuilder.privateAttributes(userAttributes.toArray(new UserAttribute[0]));
+        }, timeoutMillis != null ? timeoutMillis.longValue() : -1, result);
+      }
+    });
+
+    registerMethodHandler("boolVariation", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        String flagKey = call.argument("flagKey");
+        final LDClient client = client(call);
+        result.success(client != null ? client.boolVariation(flagKey,false) : variationFromSnapshot(storedFlagValues(call), flagKey, "bool", false));
+      }
+    });
+
+    registerMethodHandler("boolVariationFallback", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        String flagKey = call.argument("flagKey");
+        Boolean fallback = call.argument("fallback");
+        final LDClient client = client(call);
+        result.success(client != null ? client.boolVariation(flagKey,fallback) : variationFromSnapshot(storedFlagValues(call), flagKey, "bool", fallback));
+      }
+    });
+
+    registerMethodHandler("stringVariation", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        String flagKey = call.argument("flagKey");
+        final LDClient client = client(call);
+        result.success(client != null ? client.stringVariation(flagKey,null) : variationFromSnapshot(storedFlagValues(call), flagKey, "string", null));
+      }
+    });
+
+    registerMethodHandler("stringVariationFallback", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        String flagKey = call.argument("flagKey");
+        String fallback = call.argument("fallback");
+        final LDClient client = client(call);
+        result.success(client != null ? client.stringVariation(flagKey,fallback) : variationFromSnapshot(storedFlagValues(call), flagKey, "string", fallback));
+      }
+    });
+
+    registerMethodHandler("intVariation", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        String flagKey = call.argument("flagKey");
+        Number fallback = call.argument("fallback");
+        int fallbackValue = fallback != null ? fallback.intValue() : 0;
+        final LDClient client = client(call);
+        result.success(client != null ? client.intVariation(flagKey,fallbackValue) : variationFromSnapshot(storedFlagValues(call), flagKey, "int", fallbackValue));
+      }
+    });
+
+    registerMethodHandler("doubleVariation", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        String flagKey = call.argument("flagKey");
+        Number fallback = call.argument("fallback");
+        double fallbackValue = fallback != null ? fallback.doubleValue() : 0;
+        final LDClient client = client(call);
+        result.success(client != null ? client.doubleVariation(flagKey,fallbackValue) : variationFromSnapshot(storedFlagValues(call), flagKey, "double", fallbackValue));
+      }
+    });
+
+    registerMethodHandler("jsonVariation", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        String flagKey = call.argument("flagKey");
+        Object fallback = call.argument("fallback");
+        final LDClient client = client(call);
+        if (client == null) {
+          result.success(variationFromSnapshot(storedFlagValues(call), flagKey, "json", fallback));
+          return;
         }
+        result.success(LDValueEncoder.encode(client.jsonValueVariation(flagKey, LDValueEncoder.decode(fallback))));
+      }
+    });
+
+    registerMethodHandler("boolVariationDetail", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        result.success(variationDetail(client(call), (String) call.argument("flagKey"), "bool", call.argument("fallback")));
+      }
+    });
+
+    registerMethodHandler("stringVariationDetail", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        result.success(variationDetail(client(call), (String) call.argument("flagKey"), "string", call.argument("fallback")));
       }
+    });
 
-      LDConfig ldConfig = ldConfigBuilder.build();
-
-      ldClient = LDClient.init(activity.getApplication(), ldConfig, createUser(call), 5);
-
-      result.success(true);
-    } else if (call.method.equals("identify")) {
-      ldClient.identify(createUser(call));
-      result.success(true);
-    } else if (call.method.equals("boolVariation")) {
-      String flagKey = call.argument("flagKey");
-      result.success(ldClient.boolVariation(flagKey,false));
-    } else if (call.method.equals("boolVariationFallback")) {
-      String flagKey = call.argument("flagKey");
-      Boolean fallback = call.argument("fallback");
-      result.success(ldClient.boolVariation(flagKey,fallback));
-    } else if (call.method.equals("stringVariation")) {
-      String flagKey = call.argument("flagKey");
-      result.success(ldClient.stringVariation(flagKey,null));
-    } else if (call.method.equals("stringVariationFallback")) {
-      String flagKey = call.argument("flagKey");
-      String fallback = call.argument("fallback");
-      result.success(ldClient.stringVariation(flagKey,fallback));
-    } else if (call.method.equals("allFlags")) {
-      Map<String, LDValue> flagValues = ldClient.allFlags();
-      Map<String, Object> flagPrimitiveValues = new HashMap<>();
-      for (Map.Entry<String, LDValue> flag : flagValues.entrySet()) {
-        switch (flag.getValue().getType()) {
-          case NULL: // Do something with flag missing value
-            flagPrimitiveValues.put(flag.getKey(), null);
-            break;
-          case BOOLEAN: // Do something with boolean flag
-            flagPrimitiveValues.put(flag.getKey(), flag.getValue().booleanValue());
-            break;
-          case NUMBER:// Do something with numeric flag
-            flagPrimitiveValues.put(flag.getKey(), flag.getValue().floatValue());
-            break;
-          case STRING: // Do something with string flag
-            flagPrimitiveValues.put(flag.getKey(), flag.getValue().stringValue());
-            break;
-          case ARRAY: // Do something with array flag
-            break;
-          case OBJECT: // Do something with object flag
-            break;
+    registerMethodHandler("intVariationDetail", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        result.success(variationDetail(client(call), (String) call.argument("flagKey"), "int", call.argument("fallback")));
+      }
+    });
+
+    registerMethodHandler("doubleVariationDetail", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        result.success(variationDetail(client(call), (String) call.argument("flagKey"), "double", call.argument("fallback")));
+      }
+    });
+
+    registerMethodHandler("jsonVariationDetail", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        result.success(variationDetail(client(call), (String) call.argument("flagKey"), "json", call.argument("fallback")));
+      }
+    });
+
+    registerMethodHandler("variationDetailBatch", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        List<Map<String, Object>> requests = call.argument("requests");
+        if (requests == null) {
+          requests = Collections.emptyList();
         }
+        final LDClient client = client(call);
+        final List<Object> details = new ArrayList<>(requests.size());
+        for (Map<String, Object> request : requests) {
+          details.add(variationDetail(client, (String) request.get("flagKey"), (String) request.get("type"), request.get("fallback")));
+        }
+        result.success(details);
+      }
+    });
+
+    registerMethodHandler("allFlags", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        final Map<String, LDValue> flagValues = currentFlagValues(call);
+        metrics.recordConvertedFlags(flagValues.size());
+        final Map<String, Object> encodedFlags = LDValueEncoder.encodeAll(flagValues);
+        metrics.recordEncodedFlagPayload(encodedFlags);
+        result.success(encodedFlags);
       }
-      result.success(flagPrimitiveValues);
-    } else if (call.method.equals("registerFeatureFlagListener")) {
+    });
 
-      String flagKey = call.argument("flagKey");
+    registerMethodHandler("allFlagsSince", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        final FlagChangeLog.Changes changesSince = flagChangeLog.changesSince((Number) call.argument("version"));
+        final Set<String> changedKeys = changesSince.flagKeys;
 
-      FeatureFlagChangeListener listener = new FeatureFlagChangeListener() {
-        @Override
-        public void onFeatureFlagChange(final String flagKey) {
-          new Handler(Looper.getMainLooper()).post(new Runnable() {
-            @Override
-            public void run() {
-              Map<String, String> arguments = new HashMap<>();
-              arguments.put("flagKey",flagKey);
-              try{
-                channel.invokeMethod("callbackRegisterFeatureFlagListener",arguments);
-              }catch (Exception e){
-                Log.e("FeatureFlagsListener", e.getMessage());
-              }
+        final Map<String, LDValue> flagValues = currentFlagValues();
+        final Map<String, Object> flags = new HashMap<>();
+        final List<String> removed = new ArrayList<>();
+        if (changedKeys == null) {
+          for (Map.Entry<String, LDValue> flag : flagValues.entrySet()) {
+            flags.put(flag.getKey(), LDValueEncoder.encode(flag.getValue()));
+          }
+        } else {
+          // Only the flags changed since the caller's version are converted and sent.
+          for (String flagKey : changedKeys) {
+            final LDValue value = flagValues.get(flagKey);
+            if (value == null) {
+              removed.add(flagKey);
+            } else {
+              flags.put(flagKey, LDValueEncoder.encode(value));
             }
-          });
+          }
         }
-      };
-
-      ldClient.registerFeatureFlagListener(flagKey, listener);
-      listeners.put(flagKey, listener);
-      result.success(true);
-    } else if (call.method.equals("unregisterFeatureFlagListener")) {
-      String flagKey = call.argument("flagKey");
-      if (listeners.containsKey(flagKey)) {
-        ldClient.unregisterFeatureFlagListener(flagKey, listeners.get(flagKey));
-        listeners.remove(flagKey);
+
+        metrics.recordConvertedFlags(flags.size());
+        final Map<String, Object> changes = new HashMap<>();
+        changes.put("version", changesSince.version);
+        changes.put("full", changedKeys == null);
+        changes.put("flags", flags);
+        changes.put("removed", removed);
+        metrics.recordEncodedFlagPayload(changes);
+        result.success(changes);
+      }
+    });
+
+    registerMethodHandler("flagsVersion", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        result.success(flagChangeLog.getVersion());
+      }
+    });
+
+    registerMethodHandler("setMetricsEnabled", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        metrics.setEnabled(Boolean.TRUE.equals(call.argument("enabled")));
         result.success(true);
-        return;
       }
-      result.success(false);
-    } else if (call.method.equals("registerAllFlagsListener")) {
+    });
 
-      String listenerId = call.argument("listenerId");
+    registerMethodHandler("getMetrics", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        final Map<String, Object> recorded = metrics.toMap();
+        if (Boolean.TRUE.equals(call.argument("reset"))) {
+          metrics.reset();
+        }
+        result.success(recorded);
+      }
+    });
 
-      LDAllFlagsListener listener = new LDAllFlagsListener() {
-        @Override
-        public void onChange(final List<String> flagKeys) {
-          new Handler(Looper.getMainLooper()).post(new Runnable() {
-            @Override
-            public void run() {
-              Map<String, List<String>> arguments = new HashMap<>();
-              arguments.put("flagKeys",flagKeys);
+    registerMethodHandler("variationBatch", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        List<Map<String, Object>> requests = call.argument("requests");
+        if (requests == null) {
+          requests = Collections.emptyList();
+        }
+        // One snapshot for the whole batch, so the values are consistent with each other.
+        final Map<String, LDValue> flagValues = currentFlagValues(call);
+        final List<Object> values = new ArrayList<>(requests.size());
+        for (Map<String, Object> request : requests) {
+          values.add(variationFromSnapshot(flagValues, (String) request.get("flagKey"), (String) request.get("type"), request.get("fallback")));
+        }
+        result.success(values);
+      }
+    });
+
+    registerMethodHandler("trackMany", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        final LDClient client = client(call);
+        if (client == null) {
+          result.error("client not initialized", null, null);
+          return;
+        }
+        final List<Map<String, Object>> events = call.argument("events");
+        try {
+          eventTracker.track(client, EventTracker.decode(events != null ? events : Collections.<Map<String, Object>>emptyList()));
+        } catch (IllegalArgumentException e) {
+          result.error("invalid event", e.getMessage(), null);
+          return;
+        }
+        // Answered once queued: the SDK sends events in its own batches anyway.
+        result.success(true);
+      }
+    });
+
+    registerMethodHandler("flush", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        final LDClient client = client(call);
+        if (client == null) {
+          result.error("client not initialized", null, null);
+          return;
+        }
+        if (call.argument("environment") != null) {
+          eventTracker.flush(client);
+        } else {
+          // Without an environment, the events of every environment are sent.
+          for (LDClient environmentClient : environmentClients.values()) {
+            eventTracker.flush(environmentClient);
+          }
+        }
+        result.success(true);
+      }
+    });
+
+    registerMethodHandler("registerFeatureFlagListener", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        String flagKey = call.argument("flagKey");
+        String listenerId = call.hasArgument("listenerId") ? (String) call.argument("listenerId") : flagKey;
+        listenerRegistry.subscribe(flagKey, listenerId);
+        result.success(true);
+      }
+    });
+
+    registerMethodHandler("unregisterFeatureFlagListener", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        String flagKey = call.argument("flagKey");
+        String listenerId = call.hasArgument("listenerId") ? (String) call.argument("listenerId") : flagKey;
+        result.success(listenerRegistry.unsubscribe(flagKey, listenerId));
+      }
+    });
+
+    registerMethodHandler("registerAllFlagsListener", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        String listenerId = call.argument("listenerId");
+        listenerRegistry.subscribeAll(listenerId);
+        result.success(true);
+      }
+    });
+
+    registerMethodHandler("unregisterAllFlagsListener", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        String listenerId = call.argument("listenerId");
+        result.success(listenerRegistry.unsubscribeAll(listenerId));
+      }
+    });
+
+    registerMethodHandler("setOnline", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        offlineRequested = false;
+        final LDClient client = ldClient;
+        // While paused, the connection comes back on resume.
+        if (client != null && !paused) {
+          client.setOnline();
+        }
+        result.success(true);
+      }
+    });
+
+    registerMethodHandler("setOffline", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        offlineRequested = true;
+        final LDClient client = ldClient;
+        if (client != null) {
+          client.setOffline();
+        }
+        result.success(true);
+      }
+    });
+
+    registerMethodHandler("isOffline", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        // Only what Dart asked for, not the pause in the background.
+        result.success(offlineRequested);
+      }
+    });
+
+    registerMethodHandler("setConnectionMode", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        final String mode = call.argument("mode");
+        if (!"streaming".equals(mode) && !"polling".equals(mode)) {
+          result.error("invalid connection mode", mode, null);
+          return;
+        }
+        final boolean stream = "streaming".equals(mode);
+        final LDClient client = ldClient;
+        if (stream == streaming || client == null) {
+          // Without a client there is nothing to restart; the next init takes its mode from its config.
+          streaming = stream;
+          result.success(true);
+          return;
+        }
+        streaming = stream;
+        restartClient(client, result);
+      }
+    });
+
+    registerMethodHandler("setPauseInBackground", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        final Boolean pause = call.argument("pause");
+        pauseInBackground = pause != null && pause;
+        if (!pauseInBackground) {
+          resumeConnection();
+        }
+        result.success(true);
+      }
+    });
+
+    registerMethodHandler("setBinaryFlagChanges", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        final Boolean enabled = call.argument("enabled");
+        // A new codec each time, as Dart starts over with no known keys.
+        flagChangeCodec = enabled != null && enabled ? new FlagPayloadCodec() : null;
+        result.success(true);
+      }
+    });
+
+    registerMethodHandler("flagChangesDelivered", new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+        if (flagChangeStream != null) {
+          flagChangeStream.acknowledge();
+        }
+        result.success(true);
+      }
+    });
+  }
+
+  private void setupChannel(BinaryMessenger messenger) {
+    mainHandler = new Handler(Looper.getMainLooper());
+    flagChangeDispatcher = new FlagChangeDispatcher(mainHandler, new FlagChangeDispatcher.Sink() {
+      @Override
+      public void onFlagsChanged(Collection<FlagChange> changes, long version, long observedAtNanos) {
+        sendFlagsChanged(changes, version, observedAtNanos);
+      }
+    });
+    flagChangeStream = new FlagChangeStream(new Executor() {
+      @Override
+      public void execute(@NonNull Runnable command) {
+        mainHandler.post(command);
+      }
+    });
+    flagChangesChannel = new EventChannel(messenger, "launchdarkly_flutter/flagChanges");
+    flagChangesChannel.setStreamHandler(flagChangeStream);
+
+    final BasicMessageChannel.MessageHandler<ByteBuffer> flagsHandler = new BasicMessageChannel.MessageHandler<ByteBuffer>() {
+      @Override
+      public void onMessage(ByteBuffer message, @NonNull BasicMessageChannel.Reply<ByteBuffer> reply) {
+        reply.reply(encodeFlagPayload(message));
+      }
+    };
+
+    // Method calls and flag payloads are handled on a serial background queue, so neither identify
+    // nor converting many flags costs time on the UI thread. Only callbacks go through the main thread.
+    BinaryMessenger.TaskQueue taskQueue = null;
+    try {
+      taskQueue = messenger.makeBackgroundTaskQueue();
+    } catch (UnsupportedOperationException e) {
+      Log.w("LaunchdarklyFlutter", "Background task queues are not supported, using a dedicated executor");
+    }
 
-              try{
-                channel.invokeMethod("callbackAllFlagsListener",arguments);
-              }catch (Exception e){
-                Log.e("callAllFlagsListener", e.getMessage());
+    if (taskQueue != null) {
+      channel = new MethodChannel(messenger, "launchdarkly_flutter", StandardMethodCodec.INSTANCE, taskQueue);
+      channel.setMethodCallHandler(this);
+      flagsChannel = new BasicMessageChannel<>(messenger, "launchdarkly_flutter/flags", BinaryCodec.INSTANCE, taskQueue);
+      flagsChannel.setMessageHandler(flagsHandler);
+      return;
+    }
+
+    methodCallExecutor = Executors.newSingleThreadExecutor();
+    channel = new MethodChannel(messenger, "launchdarkly_flutter");
+    channel.setMethodCallHandler(new MethodCallHandler() {
+      @Override
+      public void onMethodCall(@NonNull final MethodCall call, @NonNull final Result result) {
+        methodCallExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            LaunchdarklyFlutterPlugin.this.onMethodCall(call, new MainThreadResult(result, mainHandler));
+          }
+        });
+      }
+    });
+    flagsChannel = new BasicMessageChannel<>(messenger, "launchdarkly_flutter/flags", BinaryCodec.INSTANCE);
+    flagsChannel.setMessageHandler(new BasicMessageChannel.MessageHandler<ByteBuffer>() {
+      @Override
+      public void onMessage(final ByteBuffer message, @NonNull final BasicMessageChannel.Reply<ByteBuffer> reply) {
+        methodCallExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            final ByteBuffer payload = encodeFlagPayload(message);
+            mainHandler.post(new Runnable() {
+              @Override
+              public void run() {
+                reply.reply(payload);
               }
+            });
+          }
+        });
+      }
+    });
+  }
+
+  /** Returns the client's flag values, or the saved ones while the client is starting. */
+  private Map<String, LDValue> currentFlagValues() {
+    final LDClient client = ldClient;
+    return client != null ? client.allFlags() : storedFlagValues;
+  }
+
+  /** Same as {@link #currentFlagValues()}, for the environment named by the call. */
+  private Map<String, LDValue> currentFlagValues(MethodCall call) {
+    final LDClient client = client(call);
+    return client != null ? client.allFlags() : storedFlagValues(call);
+  }
+
+  /**
+   * Returns the client of the environment named by the call's {@code environment} argument, the primary
+   * client when there is none, or {@code null} until the client has started.
+   */
+  private LDClient client(MethodCall call) {
+    final String environment = call.argument("environment");
+    if (environment == null || DEFAULT_ENVIRONMENT.equals(environment)) {
+      return ldClient;
+    }
+    return environmentClients.get(environment);
+  }
+
+  /** Only the primary environment's flags are saved, so secondary environments serve fallbacks until started. */
+  private Map<String, LDValue> storedFlagValues(MethodCall call) {
+    final String environment = call.argument("environment");
+    if (environment == null || DEFAULT_ENVIRONMENT.equals(environment)) {
+      return storedFlagValues;
+    }
+    return Collections.emptyMap();
+  }
+
+  /**
+   * Loads the flag values saved for {@code userKey}, so they can be served while the client
+   * starts. Every init loads them, as it closes the previous client first; they are served until
+   * the new client has started, and are as recent as the last values the previous one observed.
+   */
+  private void restoreFlagSnapshot(String userKey) {
+    currentUserKey = userKey;
+    if (flagSnapshotStore == null || userKey == null) {
+      return;
+    }
+    storedFlagValues = flagSnapshotStore.load(userKey);
+    observedFlagValues.clear();
+    observedFlagValues.putAll(storedFlagValues);
+  }
+
+  /**
+   * Reads the new values of changed flags the moment the change is observed and queues the
+   * changes Dart subscribed to, see {@link #collectFlagChanges}.
+   */
+  private void observeFlagChanges(Collection<String> flagKeys) {
+    final long observedAtNanos = System.nanoTime();
+    final LDClient client = ldClient;
+    if (client == null || paused || resuming) {
+      return;
+    }
+    // Read before the values, so the values are at least as recent as the version.
+    final long version = flagChangeLog.getVersion();
+    final FlagChangeStream stream = flagChangeStream;
+    final boolean streaming = stream != null && stream.isListening();
+    // The event stream gets every change, the callbacks only those of subscribed flags.
+    final List<FlagChange> streamedChanges = streaming ? new ArrayList<FlagChange>(flagKeys.size()) : null;
+    final List<FlagChange> changes = collectFlagChanges(client, flagKeys, streamedChanges);
+    if (!changes.isEmpty()) {
+      flagChangeDispatcher.enqueue(changes, version, observedAtNanos);
+    }
+    if (streaming && !streamedChanges.isEmpty()) {
+      stream.enqueue(streamedChanges, version);
+    }
+  }
+
+  /**
+   * Reads the values of {@code flagKeys} from {@code client}, pairs them with the previously observed
+   * values and returns the changes of subscribed flags. Every change is also added to
+   * {@code streamedChanges} unless it is {@code null}. The new values are saved as the current user's snapshot.
+   */
+  @VisibleForTesting
+  List<FlagChange> collectFlagChanges(LDClient client, Collection<String> flagKeys, List<FlagChange> streamedChanges) {
+    final Map<String, LDValue> flagValues = client.allFlags();
+    final String userKey = currentUserKey;
+    // While an identify runs, the values may already be the new user's; they are saved for them once it completes.
+    if (flagSnapshotStore != null && userKey != null && !identifyCoordinator.isIdentifying()) {
+      flagSnapshotStore.save(userKey, flagValues);
+    }
+    final List<FlagChange> changes = new ArrayList<>(flagKeys.size());
+    for (String flagKey : flagKeys) {
+      final LDValue newValue = flagValues.get(flagKey);
+      final LDValue oldValue = newValue != null ? observedFlagValues.put(flagKey, newValue) : observedFlagValues.remove(flagKey);
+      FlagChange change = null;
+      if (listenerRegistry.isSubscribed(flagKey)) {
+        change = new FlagChange(flagKey, oldValue, newValue);
+        changes.add(change);
+      }
+      if (streamedChanges != null) {
+        streamedChanges.add(change != null ? change : new FlagChange(flagKey, oldValue, newValue));
+      }
+    }
+    return changes;
+  }
+
+  /** Sends one {@code callbackFlagsChanged} message for a batch of flag changes. */
+  private void sendFlagsChanged(Collection<FlagChange> changes, long version, long observedAtNanos) {
+    if (channel == null) {
+      metrics.recordDroppedCallback();
+      return;
+    }
+    try{
+      final FlagPayloadCodec codec = flagChangeCodec;
+      if (codec != null) {
+        final byte[] payload = codec.encodeChanges(version, changes);
+        final int keyCount = codec.keyCount();
+        metrics.recordFlagChangePayload(payload.length);
+        // New keys count as known only once Dart has decoded them; until then they are sent again.
+        channel.invokeMethod("callbackFlagsChanged", payload, new Result() {
+          @Override
+          public void success(Object result) {
+            codec.keysDelivered(keyCount);
+          }
+
+          @Override
+          public void error(String errorCode, String errorMessage, Object errorDetails) {
+            metrics.recordDroppedCallback();
+            Log.e("FlagChangeDispatcher", "Dart could not decode flag changes: " + errorMessage);
+          }
+
+          @Override
+          public void notImplemented() {
+            metrics.recordDroppedCallback();
+          }
+        });
+      } else {
+        channel.invokeMethod("callbackFlagsChanged", flagsChangedArguments(changes, version));
+      }
+      metrics.recordCallbackSent(observedAtNanos);
+    }catch (Exception e){
+      metrics.recordDroppedCallback();
+      Log.e("FlagChangeDispatcher", e.getMessage());
+    }
+  }
+
+  /** Builds the arguments of a {@code callbackFlagsChanged} message. */
+  @VisibleForTesting
+  static Map<String, Object> flagsChangedArguments(Collection<FlagChange> changes, long version) {
+    final List<Map<String, Object>> encodedChanges = new ArrayList<>(changes.size());
+    for (FlagChange change : changes) {
+      encodedChanges.add(change.toMap());
+    }
+
+    final Map<String, Object> arguments = new HashMap<>();
+    arguments.put("changes", encodedChanges);
+    arguments.put("version", version);
+    return arguments;
+  }
+
+  /** Answers a request on the binary flags channel, see {@link FlagPayloadCodec} for the layout. */
+  private ByteBuffer encodeFlagPayload(ByteBuffer request) {
+    final byte op = request.get();
+    final int knownKeyCount = (int) FlagPayloadCodec.readVarint(request);
+    final Long sinceVersion = op == FlagPayloadCodec.OP_CHANGES_SINCE ? FlagPayloadCodec.readVarint(request) : null;
+
+    final FlagChangeLog.Changes changesSince = flagChangeLog.changesSince(sinceVersion);
+    final Map<String, LDValue> flagValues = currentFlagValues();
+    final boolean full = changesSince.flagKeys == null;
+    final Collection<String> flagKeys = full ? flagValues.keySet() : changesSince.flagKeys;
+    final ByteBuffer payload = flagPayloadCodec.encode(changesSince.version, full, flagValues, flagKeys, knownKeyCount);
+    // Counted like the replies on the method channel, the size is recorded on its own.
+    metrics.recordConvertedFlags(flagKeys.size());
+    metrics.recordFlagPayload(payload.position());
+    return payload;
+  }
+
+  private LDConfig buildConfig() {
+    return configBuilder.stream(streaming).offline(offlineRequested || paused).build();
+  }
+
+  /**
+   * The client only reads its connection mode when it starts, so it is closed and started again
+   * with the last config and user. The values it held are served until the new client is ready.
+   */
+  private void restartClient(LDClient client, Result result) {
+    storedFlagValues = client.allFlags();
+    closeClient(client);
+    initClient(buildConfig(), currentUser, DEFAULT_INIT_TIMEOUT_MILLIS, false, result);
+  }
+
+  /**
+   * Closes {@code client}. The clients of secondary environments share its connection and event
+   * pipeline, and the SDK closes them along with it.
+   */
+  private void closeClient(LDClient client) {
+    ldClient = null;
+    environmentClients = Collections.emptyMap();
+    // The next client sends its own diff once started.
+    resuming = false;
+    mainHandler.removeCallbacks(resumeTimeout);
+    client.unregisterAllFlagsListener(flagChangeListener);
+    try {
+      client.close();
+    } catch (IOException e) {
+      Log.e("LaunchdarklyFlutter", "Failed to close LDClient", e);
+    }
+  }
+
+  /** Takes the client offline while the app is in the background, queued behind any init. */
+  private void pauseConnection() {
+    initExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        final LDClient client = ldClient;
+        if (paused || client == null) {
+          return;
+        }
+        paused = true;
+        resuming = false;
+        mainHandler.removeCallbacks(resumeTimeout);
+        client.setOffline();
+      }
+    });
+  }
+
+  /**
+   * Brings the client back online. The flag changes made while paused are sent as one diff once the
+   * client has fetched its flags, see {@link #finishResume()}.
+   */
+  private void resumeConnection() {
+    initExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        if (!paused) {
+          return;
+        }
+        paused = false;
+        final LDClient client = ldClient;
+        if (client == null) {
+          return;
+        }
+        if (offlineRequested) {
+          // No fetch is coming, the cached flags are all there is.
+          observeFlagChanges(changedFlagKeys(client.allFlags()));
+          return;
+        }
+        resuming = true;
+        client.setOnline();
+        mainHandler.postDelayed(resumeTimeout, RESUME_UPDATE_TIMEOUT_MILLIS);
+      }
+    });
+  }
+
+  /**
+   * Sends the flag changes made since the pause as one diff, on the first flag update after resume
+   * or once the fetch has timed out, whichever comes first.
+   */
+  private void finishResume() {
+    initExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        if (!resuming) {
+          return;
+        }
+        resuming = false;
+        mainHandler.removeCallbacks(resumeTimeout);
+        final LDClient client = ldClient;
+        if (client != null) {
+          observeFlagChanges(changedFlagKeys(client.allFlags()));
+        }
+      }
+    });
+  }
+
+  /** Returns the keys of the flags whose live value differs from the one last observed. */
+  private Set<String> changedFlagKeys(Map<String, LDValue> liveFlagValues) {
+    final Set<String> changedFlagKeys = new HashSet<>();
+    for (Map.Entry<String, LDValue> flag : liveFlagValues.entrySet()) {
+      if (!flag.getValue().equals(observedFlagValues.get(flag.getKey()))) {
+        changedFlagKeys.add(flag.getKey());
+      }
+    }
+    for (String flagKey : observedFlagValues.keySet()) {
+      if (!liveFlagValues.containsKey(flagKey)) {
+        changedFlagKeys.add(flagKey);
+      }
+    }
+    return changedFlagKeys;
+  }
+
+  /**
+   * Starts the client on its own thread so that neither the platform thread nor other method calls
+   * are blocked on the first flag fetch. The reply is sent once the client has received its first flag payload,
+   * or once {@code timeoutMillis} expires, whichever comes first.
+   * When {@code reportStatus} is set the reply tells where the flag values came from,
+   * otherwise it is simply {@code true}.
+   */
+  private void initClient(final LDConfig ldConfig, final LDUser user, final long timeoutMillis,
+                          final boolean reportStatus, final Result result) {
+    // The application context, unlike an activity, is there even when the plugin is attached without one.
+    final Application application = (Application) applicationContext;
+    initExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        String status;
+        try {
+          final LDClient previousClient = ldClient;
+          if (previousClient != null) {
+            // Set by an init that was still running when this one was requested.
+            closeClient(previousClient);
+          }
+          Future<LDClient> initFuture = LDClient.init(application, ldConfig, user);
+          LDClient client;
+          try {
+            client = initFuture.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            // An offline client completes at once, with nothing but its cached flags.
+            status = client.isOffline() ? INIT_STATUS_CACHE : INIT_STATUS_NETWORK;
+          } catch (TimeoutException e) {
+            // The client keeps connecting in the background; until it does, flags come from the cache.
+            client = LDClient.get();
+            status = client.allFlags().isEmpty() ? INIT_STATUS_TIMEOUT : INIT_STATUS_CACHE;
+          }
+          final Map<String, LDClient> clients = new HashMap<>();
+          clients.put(DEFAULT_ENVIRONMENT, client);
+          try {
+            for (String environment : environmentNames) {
+              clients.put(environment, LDClient.getForMobileKey(environment));
+            }
+          } catch (Exception e) {
+            // The init fails without every environment, and does not leave the client it started running.
+            closeClient(client);
+            throw e;
+          }
+          client.unregisterAllFlagsListener(flagChangeListener);
+          client.registerAllFlagsListener(flagChangeListener);
+          flagChangeLog.invalidate();
+          environmentClients = clients;
+          ldClient = client;
+          storedFlagValues = Collections.emptyMap();
+          // Listeners hear about every flag whose live value differs from the saved one served so far.
+          observeFlagChanges(changedFlagKeys(client.allFlags()));
+        } catch (final Exception e) {
+          Log.e("LaunchdarklyFlutter", "Failed to initialize LDClient", e);
+          mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+              result.error("init failed", e.getMessage(), null);
             }
           });
+          return;
         }
-      };
-
-      ldClient.registerAllFlagsListener(listener);
-      allFlagsListeners.put(listenerId, listener);
-      result.success(true);
-    }  else if (call.method.equals("unregisterAllFlagsListener")) {
-      String listenerId = call.argument("listenerId");
-      if (allFlagsListeners.containsKey(listenerId)) {
-        ldClient.unregisterAllFlagsListener(allFlagsListeners.get(listenerId));
-        listeners.remove(listenerId);
-        result.success(true);
-        return;
+
+        final Object reply = reportStatus ? status : Boolean.TRUE;
+        mainHandler.post(new Runnable() {
+          @Override
+          public void run() {
+            result.success(reply);
+          }
+        });
       }
-      result.success(false);
-    }else {
-      result.notImplemented();
+    });
+  }
+
+  /**
+   * Reads a single flag from an {@code allFlags()} snapshot the way the typed variation methods would,
+   * returning {@code fallback} when the flag is missing or not of the requested type.
+   */
+  @VisibleForTesting
+  static Object variationFromSnapshot(Map<String, LDValue> flagValues, String flagKey, String type, Object fallback) {
+    final LDValue value = flagValues.get(flagKey);
+    if (value == null || value.isNull() || type == null) {
+      return fallback;
+    }
+    switch (type) {
+      case "bool":
+        return value.getType() == LDValueType.BOOLEAN ? value.booleanValue() : fallback;
+      case "string":
+        return value.isString() ? value.stringValue() : fallback;
+      case "int":
+        return value.isNumber() ? value.intValue() : fallback;
+      case "double":
+        return value.isNumber() ? value.doubleValue() : fallback;
+      case "json":
+        return LDValueEncoder.encode(value);
+      default:
+        return fallback;
     }
   }
 
-  private void setupChannel(BinaryMessenger messenger) {
-    channel = new MethodChannel(messenger, "launchdarkly_flutter");
-    channel.setMethodCallHandler(this);
+  /**
+   * Evaluates a flag with the SDK's {@code *VariationDetail} method for {@code type} and encodes the
+   * value, variation index and reason with {@link EvaluationDetailEncoder}. Like the plain variation
+   * methods, and unlike {@link #variationFromSnapshot}, this records an evaluation event.
+   */
+  @VisibleForTesting
+  static Map<String, Object> variationDetail(LDClient client, String flagKey, String type, Object fallback) {
+    if (client == null) {
+      return EvaluationDetailEncoder.error(fallback, EvaluationReason.ErrorKind.CLIENT_NOT_READY);
+    }
+    switch (type != null ? type : "") {
+      case "bool": {
+        final EvaluationDetail<Boolean> detail = client.boolVariationDetail(flagKey, fallback instanceof Boolean && (Boolean) fallback);
+        return EvaluationDetailEncoder.encode(detail, detail.getValue());
+      }
+      case "string": {
+        final EvaluationDetail<String> detail = client.stringVariationDetail(flagKey, fallback instanceof String ? (String) fallback : null);
+        return EvaluationDetailEncoder.encode(detail, detail.getValue());
+      }
+      case "int": {
+        final EvaluationDetail<Integer> detail = client.intVariationDetail(flagKey, fallback instanceof Number ? ((Number) fallback).intValue() : 0);
+        return EvaluationDetailEncoder.encode(detail, detail.getValue());
+      }
+      case "double": {
+        final EvaluationDetail<Double> detail = client.doubleVariationDetail(flagKey, fallback instanceof Number ? ((Number) fallback).doubleValue() : 0);
+        return EvaluationDetailEncoder.encode(detail, detail.getValue());
+      }
+      case "json": {
+        final EvaluationDetail<LDValue> detail = client.jsonValueVariationDetail(flagKey, LDValueEncoder.decode(fallback));
+        return EvaluationDetailEncoder.encode(detail, LDValueEncoder.encode(detail.getValue()));
+      }
+      default:
+        return EvaluationDetailEncoder.error(fallback, EvaluationReason.ErrorKind.WRONG_TYPE);
+    }
   }
 
   private static void populatePrivateCustomAttribute(LDUser.Builder builder, String key, Object value) {
@@ -309,9 +1276,10 @@ public class LaunchdarklyFlutterPlugin implements FlutterPlugin, ActivityAware,
   }
 
   @VisibleForTesting
-  void populateCustomAttributes(LDUser.Builder builder, Map<String, Object> attributes, List<String> privateAttributeKeys) {
-    for (String key : attributes.keySet()) {
-      final Object value = attributes.get(key);
+  void populateCustomAttributes(LDUser.Builder builder, Map<String, Object> attributes, Collection<String> privateAttributeKeys) {
+    for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+      final String key = attribute.getKey();
+      final Object value = attribute.getValue();
       final boolean isPrivate = privateAttributeKeys.contains(key);
       if (isPrivate) {
         populatePrivateCustomAttribute(builder, key, value);
@@ -322,7 +1290,7 @@ public class LaunchdarklyFlutterPlugin implements FlutterPlugin, ActivityAware,
   }
 
   @VisibleForTesting
-  void populateBuiltInAttributes(LDUser.Builder builder, Map<String, String> attributes, List<String> privateAttributeKeys) {
+  void populateBuiltInAttributes(LDUser.Builder builder, Map<String, String> attributes, Collection<String> privateAttributeKeys) {
     final String secondaryKey = attributes.get("secondary");
     if (privateAttributeKeys.contains("secondary")) {
       builder.privateSecondary(secondaryKey);
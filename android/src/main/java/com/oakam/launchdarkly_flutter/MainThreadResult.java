@@ -0,0 +1,47 @@
+package com.oakam.launchdarkly_flutter;
+
+import android.os.Handler;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+/** Forwards a reply to the platform thread, for engines that only accept replies there. */
+final class MainThreadResult implements Result {
+
+  private final Result result;
+  private final Handler mainHandler;
+
+  MainThreadResult(Result result, Handler mainHandler) {
+    this.result = result;
+    this.mainHandler = mainHandler;
+  }
+
+  @Override
+  public void success(final Object reply) {
+    mainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        result.success(reply);
+      }
+    });
+  }
+
+  @Override
+  public void error(final String errorCode, final String errorMessage, final Object errorDetails) {
+    mainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        result.error(errorCode, errorMessage, errorDetails);
+      }
+    });
+  }
+
+  @Override
+  public void notImplemented() {
+    mainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        result.notImplemented();
+      }
+    });
+  }
+}
@@ -0,0 +1,187 @@
+package com.oakam.launchdarkly_flutter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+import io.flutter.plugin.common.StandardMessageCodec;
+
+/**
+ * Optional instrumentation of the plugin, off until enabled. While it is off every record method
+ * returns after reading one volatile flag.
+ *
+ * <p>Records, per method, the call count, the errors and a histogram of the nanoseconds from the
+ * call to its reply. Also records the number of flags converted per {@code allFlags} and
+ * {@code allFlagsSince} reply and their size in bytes, whether sent on the method channel or the binary one,
+ * the size of binary flag change notifications, the nanoseconds from a
+ * flag change being observed to its callback being sent to Dart, the callbacks that could not be sent,
+ * and the custom events and flushes the SDK failed on.
+ */
+class PluginMetrics {
+
+  private volatile boolean enabled;
+  private final ConcurrentMap<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+  private final Histogram convertedFlagCounts = new Histogram();
+  private final Histogram flagPayloadBytes = new Histogram();
+  private final Histogram flagChangePayloadBytes = new Histogram();
+  private final Histogram callbackLagNanos = new Histogram();
+  private final AtomicLong droppedCallbacks = new AtomicLong();
+  private final AtomicLong failedEvents = new AtomicLong();
+  private final AtomicLong failedFlushes = new AtomicLong();
+
+  boolean isEnabled() {
+    return enabled;
+  }
+
+  void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /** Returns a result recording the reply to a call of {@code method}, or {@code result} itself when disabled. */
+  Result instrument(String method, Result result) {
+    if (!enabled) {
+      return result;
+    }
+    MethodMetrics metrics = methods.get(method);
+    if (metrics == null) {
+      final MethodMetrics newMetrics = new MethodMetrics();
+      metrics = methods.putIfAbsent(method, newMetrics);
+      if (metrics == null) {
+        metrics = newMetrics;
+      }
+    }
+    return new TimedResult(result, metrics, System.nanoTime());
+  }
+
+  void recordConvertedFlags(int flagCount) {
+    if (enabled) {
+      convertedFlagCounts.record(flagCount);
+    }
+  }
+
+  void recordFlagPayload(int bytes) {
+    if (enabled) {
+      flagPayloadBytes.record(bytes);
+    }
+  }
+
+  /**
+   * Records the size of a method channel reply as {@code StandardMessageCodec} encodes it. The reply
+   * is encoded an extra time for this, so only while enabled.
+   */
+  void recordEncodedFlagPayload(Object reply) {
+    if (enabled) {
+      flagPayloadBytes.record(StandardMessageCodec.INSTANCE.encodeMessage(reply).capacity());
+    }
+  }
+
+  void recordFlagChangePayload(int bytes) {
+    if (enabled) {
+      flagChangePayloadBytes.record(bytes);
+    }
+  }
+
+  /** Records a callback sent to Dart for flag changes observed at {@code observedAtNanos}. */
+  void recordCallbackSent(long observedAtNanos) {
+    if (enabled) {
+      callbackLagNanos.record(System.nanoTime() - observedAtNanos);
+    }
+  }
+
+  void recordDroppedCallback() {
+    if (enabled) {
+      droppedCallbacks.incrementAndGet();
+    }
+  }
+
+  void recordFailedEvent() {
+    if (enabled) {
+      failedEvents.incrementAndGet();
+    }
+  }
+
+  void recordFailedFlush() {
+    if (enabled) {
+      failedFlushes.incrementAndGet();
+    }
+  }
+
+  void reset() {
+    methods.clear();
+    convertedFlagCounts.reset();
+    flagPayloadBytes.reset();
+    flagChangePayloadBytes.reset();
+    callbackLagNanos.reset();
+    droppedCallbacks.set(0);
+    failedEvents.set(0);
+    failedFlushes.set(0);
+  }
+
+  /** Encodes the recorded metrics for {@code StandardMessageCodec}. */
+  Map<String, Object> toMap() {
+    final Map<String, Object> encodedMethods = new HashMap<>();
+    for (Map.Entry<String, MethodMetrics> method : methods.entrySet()) {
+      encodedMethods.put(method.getKey(), method.getValue().toMap());
+    }
+
+    final Map<String, Object> metrics = new HashMap<>();
+    metrics.put("enabled", enabled);
+    metrics.put("methods", encodedMethods);
+    metrics.put("convertedFlagCounts", convertedFlagCounts.toMap());
+    metrics.put("flagPayloadBytes", flagPayloadBytes.toMap());
+    metrics.put("flagChangePayloadBytes", flagChangePayloadBytes.toMap());
+    metrics.put("callbackLagNanos", callbackLagNanos.toMap());
+    metrics.put("droppedCallbacks", droppedCallbacks.get());
+    metrics.put("failedEvents", failedEvents.get());
+    metrics.put("failedFlushes", failedFlushes.get());
+    return metrics;
+  }
+
+  private static final class MethodMetrics {
+    final Histogram latencyNanos = new Histogram();
+    final AtomicLong errors = new AtomicLong();
+
+    Map<String, Object> toMap() {
+      final Map<String, Object> metrics = new HashMap<>(3);
+      metrics.put("count", latencyNanos.getCount());
+      metrics.put("errors", errors.get());
+      metrics.put("latencyNanos", latencyNanos.toMap());
+      return metrics;
+    }
+  }
+
+  private static final class TimedResult implements Result {
+    private final Result result;
+    private final MethodMetrics metrics;
+    private final long startNanos;
+
+    TimedResult(Result result, MethodMetrics metrics, long startNanos) {
+      this.result = result;
+      this.metrics = metrics;
+      this.startNanos = startNanos;
+    }
+
+    @Override
+    public void success(Object reply) {
+      metrics.latencyNanos.record(System.nanoTime() - startNanos);
+      result.success(reply);
+    }
+
+    @Override
+    public void error(String errorCode, String errorMessage, Object errorDetails) {
+      metrics.latencyNanos.record(System.nanoTime() - startNanos);
+      metrics.errors.incrementAndGet();
+      result.error(errorCode, errorMessage, errorDetails);
+    }
+
+    @Override
+    public void notImplemented() {
+      metrics.latencyNanos.record(System.nanoTime() - startNanos);
+      metrics.errors.incrementAndGet();
+      result.notImplemented();
+    }
+  }
+}
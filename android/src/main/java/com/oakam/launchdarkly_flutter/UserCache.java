@@ -0,0 +1,63 @@
+package com.oakam.launchdarkly_flutter;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.Nullable;
+
+import com.launchdarkly.sdk.LDUser;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Remembers the users recently built from init/identify arguments, keyed by those arguments, so
+ * identifying the same user again does not rebuild it. Also hands out the anonymous user key,
+ * which is persisted so an anonymous user keeps the same key across calls and app launches.
+ */
+class UserCache {
+
+  private static final int MAX_USERS = 16;
+  private static final String PREFERENCES_NAME = "launchdarkly_flutter";
+  private static final String ANONYMOUS_USER_KEY = "anonymousUserKey";
+
+  private final Map<List<Object>, LDUser> users = new LinkedHashMap<List<Object>, LDUser>(MAX_USERS, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<List<Object>, LDUser> eldest) {
+      return size() > MAX_USERS;
+    }
+  };
+  private String anonymousUserKey;
+
+  /** Returns the user built from the given arguments, or null if there is none. */
+  synchronized LDUser get(List<Object> arguments) {
+    return users.get(arguments);
+  }
+
+  synchronized void put(List<Object> arguments, LDUser user) {
+    users.put(arguments, user);
+  }
+
+  /**
+   * Returns the key used for anonymous users. It is read from, or saved to, the app's shared
+   * preferences when a {@code context} is given, and only kept in memory otherwise.
+   */
+  synchronized String getAnonymousUserKey(@Nullable Context context) {
+    if (anonymousUserKey != null) {
+      return anonymousUserKey;
+    }
+    final SharedPreferences preferences = context != null ? context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE) : null;
+    if (preferences != null) {
+      anonymousUserKey = preferences.getString(ANONYMOUS_USER_KEY, null);
+    }
+    if (anonymousUserKey == null) {
+      anonymousUserKey = UUID.randomUUID().toString();
+      if (preferences != null) {
+        preferences.edit().putString(ANONYMOUS_USER_KEY, anonymousUserKey).apply();
+      }
+    }
+    return anonymousUserKey;
+  }
+}
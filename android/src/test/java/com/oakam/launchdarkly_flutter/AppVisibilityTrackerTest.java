@@ -0,0 +1,77 @@
+package com.oakam.launchdarkly_flutter;
+
+import android.app.Activity;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class AppVisibilityTrackerTest {
+
+    private final List<String> transitions = new ArrayList<>();
+    private AppVisibilityTracker tracker;
+
+    @Before
+    public void setUp() {
+        tracker = new AppVisibilityTracker(new AppVisibilityTracker.Listener() {
+            @Override
+            public void onForeground() {
+                transitions.add("foreground");
+            }
+
+            @Override
+            public void onBackground() {
+                transitions.add("background");
+            }
+        });
+    }
+
+    @Test
+    public void testBackgroundOnceLastActivityStops() {
+        final Activity first = new TestActivity(false);
+        final Activity second = new TestActivity(false);
+
+        tracker.onActivityStarted(first);
+        tracker.onActivityStarted(second);
+        tracker.onActivityStopped(first);
+        tracker.onActivityStopped(second);
+        tracker.onActivityStarted(first);
+
+        Assert.assertEquals(3, transitions.size());
+        Assert.assertEquals("foreground", transitions.get(0));
+        Assert.assertEquals("background", transitions.get(1));
+        Assert.assertEquals("foreground", transitions.get(2));
+    }
+
+    @Test
+    public void testConfigurationChangeIsNotBackground() {
+        tracker.onActivityStarted(new TestActivity(false));
+        tracker.onActivityStopped(new TestActivity(true));
+        tracker.onActivityStarted(new TestActivity(false));
+
+        Assert.assertEquals(1, transitions.size());
+    }
+
+    @Test
+    public void testStopWithoutStartIsIgnored() {
+        tracker.onActivityStopped(new TestActivity(false));
+
+        Assert.assertTrue(transitions.isEmpty());
+    }
+
+    private static class TestActivity extends Activity {
+        private final boolean changingConfigurations;
+
+        TestActivity(boolean changingConfigurations) {
+            this.changingConfigurations = changingConfigurations;
+        }
+
+        @Override
+        public boolean isChangingConfigurations() {
+            return changingConfigurations;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.oakam.launchdarkly_flutter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ConfigMapReaderTest {
+
+    @Test
+    public void testReadsAllSettings() {
+        final Map<String, Object> config = new HashMap<>();
+        config.put("allAttributesPrivate", true);
+        config.put("eventsFlushIntervalMillis", 5000);
+        config.put("eventsCapacity", 200);
+        config.put("pollingIntervalMillis", 600_000L);
+        config.put("backgroundPollingIntervalMillis", 3_600_000);
+        config.put("connectionTimeoutMillis", 10_000);
+        config.put("stream", false);
+        config.put("diagnosticOptOut", true);
+        config.put("evaluationReasons", true);
+
+        Assert.assertNotNull(ConfigMapReader.read("MOBILE_KEY", config));
+    }
+
+    @Test
+    public void testNullEntriesKeepDefaults() {
+        final Map<String, Object> config = new HashMap<>();
+        config.put("eventsCapacity", null);
+        config.put("stream", null);
+
+        Assert.assertNotNull(ConfigMapReader.read("MOBILE_KEY", config));
+        Assert.assertNotNull(ConfigMapReader.read("MOBILE_KEY", null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsPollingIntervalBelowMinimum() {
+        final Map<String, Object> config = new HashMap<>();
+        config.put("pollingIntervalMillis", ConfigMapReader.MIN_POLLING_INTERVAL_MILLIS - 1);
+
+        ConfigMapReader.read("MOBILE_KEY", config);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsNonPositiveCapacity() {
+        final Map<String, Object> config = new HashMap<>();
+        config.put("eventsCapacity", 0);
+
+        ConfigMapReader.read("MOBILE_KEY", config);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsIntervalOutOfIntRange() {
+        final Map<String, Object> config = new HashMap<>();
+        config.put("connectionTimeoutMillis", 1L << 40);
+
+        ConfigMapReader.read("MOBILE_KEY", config);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsWrongType() {
+        final Map<String, Object> config = new HashMap<>();
+        config.put("stream", "yes");
+
+        ConfigMapReader.read("MOBILE_KEY", config);
+    }
+
+    @Test
+    public void testReadsSecondaryMobileKeys() {
+        final Map<String, Object> config = new HashMap<>();
+        config.put("secondaryMobileKeys", Collections.singletonMap("platform", "PLATFORM_KEY"));
+
+        Assert.assertEquals(Collections.singletonMap("platform", "PLATFORM_KEY"), ConfigMapReader.readSecondaryMobileKeys(config));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsSecondaryEnvironmentNamedDefault() {
+        final Map<String, Object> config = new HashMap<>();
+        config.put("secondaryMobileKeys", Collections.singletonMap(LaunchdarklyFlutterPlugin.DEFAULT_ENVIRONMENT, "KEY"));
+
+        ConfigMapReader.read("MOBILE_KEY", config);
+    }
+}
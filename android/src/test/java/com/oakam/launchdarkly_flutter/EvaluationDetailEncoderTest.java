@@ -0,0 +1,64 @@
+package com.oakam.launchdarkly_flutter;
+
+import com.launchdarkly.sdk.EvaluationDetail;
+import com.launchdarkly.sdk.EvaluationReason;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class EvaluationDetailEncoderTest {
+
+    @Test
+    public void testEncodeRuleMatch() {
+        final EvaluationDetail<Boolean> detail = EvaluationDetail.fromValue(true, 1, EvaluationReason.ruleMatch(2, "rule-id"));
+
+        final Map<String, Object> reason = new HashMap<>();
+        reason.put("kind", "RULE_MATCH");
+        reason.put("ruleIndex", 2);
+        reason.put("ruleId", "rule-id");
+        final Map<String, Object> expected = new HashMap<>();
+        expected.put("value", true);
+        expected.put("variationIndex", 1);
+        expected.put("reason", reason);
+
+        Assert.assertEquals(expected, EvaluationDetailEncoder.encode(detail, detail.getValue()));
+    }
+
+    @Test
+    public void testEncodeWithoutVariation() {
+        final EvaluationDetail<String> detail = EvaluationDetail.fromValue("fallback", EvaluationDetail.NO_VARIATION,
+                EvaluationReason.error(EvaluationReason.ErrorKind.FLAG_NOT_FOUND));
+
+        final Map<String, Object> reason = new HashMap<>();
+        reason.put("kind", "ERROR");
+        reason.put("errorKind", "FLAG_NOT_FOUND");
+        final Map<String, Object> expected = new HashMap<>();
+        expected.put("value", "fallback");
+        expected.put("reason", reason);
+
+        Assert.assertEquals(expected, EvaluationDetailEncoder.encode(detail, detail.getValue()));
+    }
+
+    @Test
+    public void testEncodeOff() {
+        final Map<String, Object> reason = new HashMap<>();
+        reason.put("kind", "OFF");
+
+        Assert.assertEquals(reason, EvaluationDetailEncoder.encodeReason(EvaluationReason.off()));
+    }
+
+    @Test
+    public void testClientNotReady() {
+        final Map<String, Object> reason = new HashMap<>();
+        reason.put("kind", "ERROR");
+        reason.put("errorKind", "CLIENT_NOT_READY");
+        final Map<String, Object> expected = new HashMap<>();
+        expected.put("value", 3);
+        expected.put("reason", reason);
+
+        Assert.assertEquals(expected, LaunchdarklyFlutterPlugin.variationDetail(null, "flagKey", "int", 3));
+    }
+}
@@ -0,0 +1,70 @@
+package com.oakam.launchdarkly_flutter;
+
+import com.launchdarkly.sdk.android.LDClient;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class EventTrackerTest {
+
+    @Test
+    public void testDecode() {
+        final Map<String, Object> metric = event("purchase");
+        metric.put("metricValue", 42);
+
+        final List<EventTracker.Event> events = EventTracker.decode(Arrays.asList(event("click"), metric));
+
+        Assert.assertEquals(2, events.size());
+        Assert.assertEquals("click", events.get(0).name);
+        Assert.assertNull(events.get(0).data);
+        Assert.assertNull(events.get(0).metricValue);
+        Assert.assertEquals(42.0, events.get(1).metricValue, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsEventWithoutName() {
+        EventTracker.decode(Collections.singletonList(event(null)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsNonNumericMetric() {
+        final Map<String, Object> metric = event("purchase");
+        metric.put("metricValue", "42");
+
+        EventTracker.decode(Collections.singletonList(metric));
+    }
+
+    @Test
+    public void testFailedEventIsRecordedAndTheNextOnesStillRun() {
+        final PluginMetrics metrics = new PluginMetrics();
+        metrics.setEnabled(true);
+        final EventTracker tracker = new EventTracker(metrics);
+        final LDClient client = Mockito.mock(LDClient.class);
+        Mockito.doThrow(new IllegalStateException("closed")).when(client).track("click");
+        Mockito.doThrow(new IllegalStateException("closed")).when(client).flush();
+
+        tracker.track(client, EventTracker.decode(Arrays.asList(event("click"), event("scroll"))));
+        tracker.flush(client);
+        tracker.track(client, EventTracker.decode(Collections.singletonList(event("done"))));
+
+        // Tasks run one at a time, so once the last event is tracked the failures are recorded.
+        Mockito.verify(client, Mockito.timeout(1000)).track("done");
+        tracker.shutdown();
+        Mockito.verify(client).track("scroll");
+        Assert.assertEquals(1L, metrics.toMap().get("failedEvents"));
+        Assert.assertEquals(1L, metrics.toMap().get("failedFlushes"));
+    }
+
+    private static Map<String, Object> event(String name) {
+        final Map<String, Object> event = new HashMap<>();
+        event.put("eventName", name);
+        return event;
+    }
+}
@@ -0,0 +1,47 @@
+package com.oakam.launchdarkly_flutter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+public class FlagChangeLogTest {
+
+    private final FlagChangeLog changeLog = new FlagChangeLog();
+
+    @Test
+    public void testChangedSince() {
+        final long initialVersion = changeLog.getVersion();
+        final long firstVersion = changeLog.recordChanges(Arrays.asList("flag1", "flag2"));
+        final long secondVersion = changeLog.recordChanges(Collections.singletonList("flag3"));
+
+        Assert.assertEquals(secondVersion, changeLog.getVersion());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("flag1", "flag2", "flag3")), changeLog.changedSince(initialVersion));
+        Assert.assertEquals(Collections.singleton("flag3"), changeLog.changedSince(firstVersion));
+        Assert.assertEquals(Collections.<String>emptySet(), changeLog.changedSince(secondVersion));
+    }
+
+    @Test
+    public void testChangedSinceUnknownVersion() {
+        final long initialVersion = changeLog.getVersion();
+        changeLog.recordChanges(Collections.singletonList("flag1"));
+        final long invalidatedVersion = changeLog.invalidate();
+
+        Assert.assertNull(changeLog.changedSince(initialVersion));
+        Assert.assertNull(changeLog.changedSince(invalidatedVersion + 1));
+        Assert.assertEquals(Collections.<String>emptySet(), changeLog.changedSince(invalidatedVersion));
+    }
+
+    @Test
+    public void testOldChangesAreDropped() {
+        final long initialVersion = changeLog.getVersion();
+        for (int i = 0; i < 1000; i++) {
+            changeLog.recordChanges(Collections.singletonList("flag" + i));
+        }
+
+        Assert.assertNull(changeLog.changedSince(initialVersion));
+        Assert.assertEquals(Collections.singleton("flag999"), changeLog.changedSince(changeLog.getVersion() - 1));
+    }
+}
@@ -0,0 +1,139 @@
+package com.oakam.launchdarkly_flutter;
+
+import com.launchdarkly.sdk.LDValue;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import io.flutter.plugin.common.EventChannel;
+
+public class FlagChangeStreamTest {
+
+    private final ArrayDeque<Runnable> pendingDeliveries = new ArrayDeque<>();
+    private final List<Map<String, Object>> events = new ArrayList<>();
+    private FlagChangeStream stream;
+
+    private final EventChannel.EventSink sink = new EventChannel.EventSink() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public void success(Object event) {
+            events.add((Map<String, Object>) event);
+        }
+
+        @Override
+        public void error(String errorCode, String errorMessage, Object errorDetails) {
+            Assert.fail(errorMessage);
+        }
+
+        @Override
+        public void endOfStream() {
+        }
+    };
+
+    @Before
+    public void setUp() {
+        stream = new FlagChangeStream(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                pendingDeliveries.add(command);
+            }
+        });
+    }
+
+    @Test
+    public void testChangesAreIgnoredWithoutListener() {
+        stream.enqueue(Collections.singletonList(change("a", 1)), 1);
+
+        Assert.assertFalse(stream.isListening());
+        Assert.assertTrue(pendingDeliveries.isEmpty());
+    }
+
+    @Test
+    public void testOneBatchInFlightUntilAcknowledged() {
+        stream.onListen(null, sink);
+        stream.enqueue(Collections.singletonList(change("a", 1)), 1);
+        deliverAll();
+        stream.enqueue(Collections.singletonList(change("b", 1)), 2);
+        stream.enqueue(Collections.singletonList(change("c", 1)), 3);
+        deliverAll();
+
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals(Arrays.asList("a"), flagKeys(events.get(0)));
+
+        stream.acknowledge();
+        deliverAll();
+
+        Assert.assertEquals(2, events.size());
+        Assert.assertEquals(Arrays.asList("b", "c"), flagKeys(events.get(1)));
+        Assert.assertEquals(3L, events.get(1).get("version"));
+        Assert.assertEquals(0L, events.get(1).get("dropped"));
+    }
+
+    @Test
+    public void testDropOldestWhenBufferIsFull() {
+        stream.onListen(arguments(2, "dropOldest"), sink);
+        stream.enqueue(Arrays.asList(change("a", 1), change("a", 2), change("b", 1), change("a", 3)), 1);
+        deliverAll();
+
+        Assert.assertEquals(Arrays.asList("b", "a"), flagKeys(events.get(0)));
+        Assert.assertEquals(2L, events.get(0).get("dropped"));
+    }
+
+    @Test
+    public void testLatestPerKeyCollapsesChanges() {
+        stream.onListen(arguments(2, "latestPerKey"), sink);
+        stream.enqueue(Arrays.asList(change("a", 1), change("b", 1), change("a", 2), change("c", 1)), 1);
+        deliverAll();
+
+        // "b" was the least recently changed flag once "c" did not fit.
+        Assert.assertEquals(Arrays.asList("a", "c"), flagKeys(events.get(0)));
+        Assert.assertEquals(1L, events.get(0).get("dropped"));
+    }
+
+    @Test
+    public void testCancelDiscardsBufferedChanges() {
+        stream.onListen(null, sink);
+        stream.enqueue(Collections.singletonList(change("a", 1)), 1);
+        stream.onCancel(null);
+        deliverAll();
+
+        Assert.assertFalse(stream.isListening());
+        Assert.assertTrue(events.isEmpty());
+    }
+
+    private void deliverAll() {
+        while (!pendingDeliveries.isEmpty()) {
+            pendingDeliveries.poll().run();
+        }
+    }
+
+    private static FlagChange change(String flagKey, int value) {
+        return new FlagChange(flagKey, null, LDValue.of(value));
+    }
+
+    private static Map<String, Object> arguments(int bufferSize, String overflow) {
+        final Map<String, Object> arguments = new HashMap<>();
+        arguments.put("bufferSize", bufferSize);
+        arguments.put("overflow", overflow);
+        return arguments;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> flagKeys(Map<String, Object> event) {
+        final List<String> flagKeys = new ArrayList<>();
+        for (Map<String, Object> change : (List<Map<String, Object>>) event.get("changes")) {
+            flagKeys.add((String) change.get("flagKey"));
+        }
+        return flagKeys;
+    }
+}
@@ -0,0 +1,39 @@
+package com.oakam.launchdarkly_flutter;
+
+import com.launchdarkly.sdk.LDValue;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+
+public class FlagChangeTest {
+
+    @Test
+    public void testToMap() {
+        final Map<String, Object> change = new FlagChange("flagKey", LDValue.of(1), LDValue.of(2.5)).toMap();
+
+        Assert.assertEquals("flagKey", change.get("flagKey"));
+        Assert.assertEquals("number", change.get("type"));
+        Assert.assertEquals(2.5, change.get("value"));
+        Assert.assertEquals(1, change.get("oldValue"));
+    }
+
+    @Test
+    public void testDeletedFlagToMap() {
+        final Map<String, Object> change = new FlagChange("flagKey", LDValue.of("old"), null).toMap();
+
+        Assert.assertNull(change.get("type"));
+        Assert.assertNull(change.get("value"));
+        Assert.assertEquals("old", change.get("oldValue"));
+    }
+
+    @Test
+    public void testFollowedBy() {
+        final FlagChange first = new FlagChange("flagKey", LDValue.of(false), LDValue.of(true));
+        final FlagChange collapsed = first.followedBy(new FlagChange("flagKey", LDValue.of(true), LDValue.of("new")));
+
+        Assert.assertEquals(LDValue.of(false), collapsed.oldValue);
+        Assert.assertEquals(LDValue.of("new"), collapsed.newValue);
+    }
+}
@@ -0,0 +1,46 @@
+package com.oakam.launchdarkly_flutter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FlagListenerRegistryTest {
+
+    private final FlagListenerRegistry registry = new FlagListenerRegistry();
+
+    @Test
+    public void testFlagStaysSubscribedUntilLastSubscriberLeaves() {
+        Assert.assertTrue(registry.subscribe("flagKey", "first"));
+        Assert.assertTrue(registry.subscribe("flagKey", "second"));
+        Assert.assertFalse(registry.subscribe("flagKey", "second"));
+
+        Assert.assertTrue(registry.unsubscribe("flagKey", "first"));
+        Assert.assertTrue(registry.isSubscribed("flagKey"));
+        Assert.assertTrue(registry.unsubscribe("flagKey", "second"));
+        Assert.assertFalse(registry.isSubscribed("flagKey"));
+        Assert.assertFalse(registry.unsubscribe("flagKey", "second"));
+    }
+
+    @Test
+    public void testAllFlagsSubscriberListensToEveryFlag() {
+        registry.subscribe("flagKey", "flagKey");
+        Assert.assertFalse(registry.isSubscribed("otherFlagKey"));
+
+        Assert.assertTrue(registry.subscribeAll("listenerId"));
+        Assert.assertTrue(registry.isSubscribed("otherFlagKey"));
+
+        Assert.assertTrue(registry.unsubscribeAll("listenerId"));
+        Assert.assertFalse(registry.unsubscribeAll("listenerId"));
+        Assert.assertFalse(registry.isSubscribed("otherFlagKey"));
+    }
+
+    @Test
+    public void testClear() {
+        registry.subscribe("flagKey", "flagKey");
+        registry.subscribeAll("listenerId");
+
+        registry.clear();
+
+        Assert.assertFalse(registry.isSubscribed("flagKey"));
+        Assert.assertFalse(registry.unsubscribeAll("listenerId"));
+    }
+}
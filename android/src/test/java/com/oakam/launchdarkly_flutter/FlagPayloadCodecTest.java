@@ -0,0 +1,96 @@
+package com.oakam.launchdarkly_flutter;
+
+import com.launchdarkly.sdk.LDValue;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class FlagPayloadCodecTest {
+
+    private final FlagPayloadCodec codec = new FlagPayloadCodec();
+
+    @Test
+    public void testEncodeAllFlags() {
+        final Map<String, LDValue> flagValues = new LinkedHashMap<>();
+        flagValues.put("a", LDValue.of(true));
+        flagValues.put("b", LDValue.of(-2));
+
+        final byte[] expected = {
+                FlagPayloadCodec.FORMAT, 7, 1,
+                0, 2, 1, 'a', 1, 'b',
+                2, 0, FlagPayloadCodec.TAG_TRUE, 1, FlagPayloadCodec.TAG_INT, 3,
+        };
+        Assert.assertArrayEquals(expected, toBytes(codec.encode(7, true, flagValues, flagValues.keySet(), 0)));
+    }
+
+    @Test
+    public void testKnownKeysAreNotResent() {
+        final Map<String, LDValue> flagValues = Collections.singletonMap("a", LDValue.of("x"));
+        codec.encode(1, true, flagValues, flagValues.keySet(), 0);
+
+        // Only the newly interned "gone" key is sent along.
+        final byte[] expected = {
+                FlagPayloadCodec.FORMAT, 2, 0,
+                1, 1, 4, 'g', 'o', 'n', 'e',
+                2, 0, FlagPayloadCodec.TAG_STRING, 1, 'x', 1, FlagPayloadCodec.TAG_REMOVED,
+        };
+        Assert.assertArrayEquals(expected, toBytes(codec.encode(2, false, flagValues, Arrays.asList("a", "gone"), 1)));
+    }
+
+    @Test
+    public void testUnknownKeyCountResendsEveryKey() {
+        final Map<String, LDValue> flagValues = Collections.singletonMap("a", LDValue.ofNull());
+        codec.encode(1, true, flagValues, flagValues.keySet(), 0);
+
+        final byte[] expected = {
+                FlagPayloadCodec.FORMAT, 1, 1,
+                0, 1, 1, 'a',
+                1, 0, FlagPayloadCodec.TAG_NULL,
+        };
+        Assert.assertArrayEquals(expected, toBytes(codec.encode(1, true, flagValues, flagValues.keySet(), 5)));
+    }
+
+    @Test
+    public void testEncodeChangesSendsKeysOnce() {
+        final FlagChange change = new FlagChange("a", LDValue.of(false), LDValue.of(true));
+        codec.encodeChanges(1, Collections.singletonList(change));
+        codec.keysDelivered(codec.keyCount());
+
+        final byte[] expected = {
+                FlagPayloadCodec.FORMAT_CHANGES, 2,
+                1, 1, 1, 'b',
+                2, 0, FlagPayloadCodec.TAG_TRUE, FlagPayloadCodec.TAG_FALSE,
+                1, FlagPayloadCodec.TAG_REMOVED, FlagPayloadCodec.TAG_REMOVED,
+        };
+        Assert.assertArrayEquals(expected, codec.encodeChanges(2, Arrays.asList(change, new FlagChange("b", null, null))));
+    }
+
+    @Test
+    public void testEncodeChangesResendsUndeliveredKeys() {
+        final FlagChange change = new FlagChange("a", null, null);
+        final byte[] first = codec.encodeChanges(1, Collections.singletonList(change));
+        first[1] = 2;
+
+        Assert.assertArrayEquals(first, codec.encodeChanges(2, Collections.singletonList(change)));
+    }
+
+    @Test
+    public void testReadVarint() {
+        final ByteBuffer buffer = ByteBuffer.wrap(new byte[]{(byte) 0xAC, 0x02, 0x05});
+        Assert.assertEquals(300, FlagPayloadCodec.readVarint(buffer));
+        Assert.assertEquals(5, FlagPayloadCodec.readVarint(buffer));
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,78 @@
+package com.oakam.launchdarkly_flutter;
+
+import com.launchdarkly.sdk.LDValue;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+public class FlagSnapshotStoreTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private FlagSnapshotStore store;
+
+    @After
+    public void tearDown() {
+        if (store != null) {
+            store.shutdown();
+        }
+    }
+
+    @Test
+    public void testEncodeDecode() {
+        final Map<String, LDValue> flagValues = new HashMap<>();
+        flagValues.put("bool", LDValue.of(true));
+        flagValues.put("int", LDValue.of(-3));
+        flagValues.put("double", LDValue.of(2.5));
+        flagValues.put("string", LDValue.of("value"));
+        flagValues.put("null", LDValue.ofNull());
+        flagValues.put("json", LDValue.buildObject()
+                .put("list", LDValue.buildArray().add(1).add("two").build())
+                .put("nested", LDValue.buildObject().put("flag", false).build())
+                .build());
+
+        final Map<String, LDValue> decoded = FlagSnapshotStore.decode(ByteBuffer.wrap(FlagSnapshotStore.encode(flagValues)));
+
+        Assert.assertEquals(flagValues, decoded);
+    }
+
+    @Test
+    public void testUnknownFormatIsIgnored() {
+        Assert.assertTrue(FlagSnapshotStore.decode(ByteBuffer.wrap(new byte[]{99, 0})).isEmpty());
+    }
+
+    @Test
+    public void testSaveAndLoadPerUser() throws Exception {
+        store = new FlagSnapshotStore(folder.newFolder("snapshots"));
+        Assert.assertTrue(store.load("user").isEmpty());
+
+        final Map<String, LDValue> userFlags = new HashMap<>();
+        userFlags.put("flag", LDValue.of("user"));
+        final Map<String, LDValue> otherUserFlags = new HashMap<>();
+        otherUserFlags.put("flag", LDValue.of("other"));
+
+        store.save("user", userFlags);
+        store.save("other", otherUserFlags);
+
+        Assert.assertEquals(userFlags, awaitSnapshot("user"));
+        Assert.assertEquals(otherUserFlags, awaitSnapshot("other"));
+    }
+
+    private Map<String, LDValue> awaitSnapshot(String userKey) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 1000;
+        Map<String, LDValue> flagValues = store.load(userKey);
+        while (flagValues.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            flagValues = store.load(userKey);
+        }
+        return flagValues;
+    }
+}
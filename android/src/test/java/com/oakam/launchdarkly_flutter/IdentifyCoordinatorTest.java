@@ -0,0 +1,144 @@
+package com.oakam.launchdarkly_flutter;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.flutter.plugin.common.MethodChannel;
+
+public class IdentifyCoordinatorTest {
+
+    private final IdentifyCoordinator coordinator = new IdentifyCoordinator();
+    private final BlockingQueue<String> started = new LinkedBlockingQueue<>();
+    private final BlockingQueue<String> identifiedUsers = new LinkedBlockingQueue<>();
+
+    @After
+    public void tearDown() {
+        coordinator.shutdown();
+    }
+
+    @Test
+    public void testRepliesOnceFlagsAreLoaded() throws Exception {
+        final CompletableFuture<Void> identified = new CompletableFuture<>();
+        final BlockingQueue<Object> replies = new ArrayBlockingQueue<>(1);
+
+        coordinator.identify(identify("user", identified), identified("user"), -1, result(replies));
+        Assert.assertNull(replies.poll(100, TimeUnit.MILLISECONDS));
+
+        identified.complete(null);
+        Assert.assertEquals(true, replies.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        final BlockingQueue<Object> replies = new ArrayBlockingQueue<>(1);
+
+        coordinator.identify(identify("user", new CompletableFuture<Void>()), identified("user"), 50, result(replies));
+
+        Assert.assertEquals(false, replies.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testZeroTimeoutRepliesAtOnce() throws Exception {
+        final CompletableFuture<Void> identified = new CompletableFuture<>();
+        final BlockingQueue<Object> replies = new ArrayBlockingQueue<>(1);
+
+        coordinator.identify(identify("user", identified), identified("user"), 0, result(replies));
+
+        Assert.assertEquals(false, replies.poll(1, TimeUnit.SECONDS));
+        identified.complete(null);
+        Assert.assertEquals("user", identifiedUsers.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testOnlyMostRecentPendingIdentifyIsApplied() throws Exception {
+        final CompletableFuture<Void> first = new CompletableFuture<>();
+        final CompletableFuture<Void> latest = new CompletableFuture<>();
+        final BlockingQueue<Object> firstReplies = new ArrayBlockingQueue<>(1);
+        final BlockingQueue<Object> supersededReplies = new ArrayBlockingQueue<>(1);
+        final BlockingQueue<Object> latestReplies = new ArrayBlockingQueue<>(1);
+
+        coordinator.identify(identify("first", first), identified("first"), -1, result(firstReplies));
+        Assert.assertEquals("first", started.poll(1, TimeUnit.SECONDS));
+        coordinator.identify(identify("superseded", new CompletableFuture<Void>()), identified("superseded"), -1, result(supersededReplies));
+        coordinator.identify(identify("latest", latest), identified("latest"), -1, result(latestReplies));
+
+        Assert.assertEquals(false, supersededReplies.poll(1, TimeUnit.SECONDS));
+
+        first.complete(null);
+        latest.complete(null);
+        Assert.assertEquals(true, firstReplies.poll(1, TimeUnit.SECONDS));
+        Assert.assertEquals(true, latestReplies.poll(1, TimeUnit.SECONDS));
+        Assert.assertEquals("latest", started.poll());
+        Assert.assertTrue(started.isEmpty());
+        Assert.assertEquals("first", identifiedUsers.poll(1, TimeUnit.SECONDS));
+        Assert.assertEquals("latest", identifiedUsers.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testOnIdentifiedRunsOnlyForCompletedIdentify() throws Exception {
+        final CompletableFuture<Void> failed = new CompletableFuture<>();
+        final CompletableFuture<Void> late = new CompletableFuture<>();
+        final BlockingQueue<Object> failedReplies = new ArrayBlockingQueue<>(1);
+        final BlockingQueue<Object> lateReplies = new ArrayBlockingQueue<>(1);
+
+        coordinator.identify(identify("failed", failed), identified("failed"), -1, result(failedReplies));
+        failed.completeExceptionally(new IllegalStateException("offline"));
+        Assert.assertEquals("identify failed", failedReplies.poll(1, TimeUnit.SECONDS));
+
+        coordinator.identify(identify("late", late), identified("late"), 50, result(lateReplies));
+        Assert.assertEquals(false, lateReplies.poll(1, TimeUnit.SECONDS));
+        Assert.assertTrue(identifiedUsers.isEmpty());
+        Assert.assertTrue(coordinator.isIdentifying());
+
+        late.complete(null);
+        Assert.assertEquals("late", identifiedUsers.poll(1, TimeUnit.SECONDS));
+        Assert.assertTrue(identifiedUsers.isEmpty());
+    }
+
+    private Runnable identified(final String user) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                identifiedUsers.add(user);
+            }
+        };
+    }
+
+    private Callable<Future<Void>> identify(final String user, final Future<Void> identified) {
+        return new Callable<Future<Void>>() {
+            @Override
+            public Future<Void> call() {
+                started.add(user);
+                return identified;
+            }
+        };
+    }
+
+    private static MethodChannel.Result result(final BlockingQueue<Object> replies) {
+        return new MethodChannel.Result() {
+            @Override
+            public void success(Object result) {
+                replies.add(result);
+            }
+
+            @Override
+            public void error(String errorCode, String errorMessage, Object errorDetails) {
+                replies.add(errorCode);
+            }
+
+            @Override
+            public void notImplemented() {
+                replies.add("notImplemented");
+            }
+        };
+    }
+}
@@ -0,0 +1,70 @@
+package com.oakam.launchdarkly_flutter;
+
+import com.launchdarkly.sdk.LDValue;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LDValueEncoderTest {
+
+    @Test
+    public void testEncodeNumbers() {
+        Assert.assertEquals(10, LDValueEncoder.encode(LDValue.of(10)));
+        Assert.assertEquals(5000000000L, LDValueEncoder.encode(LDValue.of(5000000000L)));
+        Assert.assertEquals(0.1, LDValueEncoder.encode(LDValue.of(0.1)));
+        Assert.assertEquals(123456.789, LDValueEncoder.encode(LDValue.of(123456.789)));
+    }
+
+    @Test
+    public void testEncodeArrayAndObject() {
+        final LDValue value = LDValue.buildObject()
+                .put("array", LDValue.buildArray().add(true).add("two").add(3).build())
+                .put("null", LDValue.ofNull())
+                .build();
+
+        final Map<String, Object> expected = new HashMap<>();
+        expected.put("array", Arrays.<Object>asList(true, "two", 3));
+        expected.put("null", null);
+
+        Assert.assertEquals(expected, LDValueEncoder.encode(value));
+    }
+
+    @Test
+    public void testEncodeAll() {
+        final Map<String, LDValue> flagValues = new HashMap<>();
+        flagValues.put("bool", LDValue.of(true));
+        flagValues.put("array", LDValue.buildArray().add(1).build());
+        flagValues.put("object", LDValue.buildObject().put("key", "value").build());
+
+        final Map<String, Object> encoded = LDValueEncoder.encodeAll(flagValues);
+
+        Assert.assertEquals(true, encoded.get("bool"));
+        Assert.assertEquals(Collections.singletonList(1), encoded.get("array"));
+        Assert.assertEquals(Collections.singletonMap("key", "value"), encoded.get("object"));
+    }
+
+    @Test
+    public void testDecode() {
+        final Map<String, Object> object = new HashMap<>();
+        object.put("list", Arrays.<Object>asList(1, 2.5, "three", false));
+        object.put("long", 5000000000L);
+        final List<Object> value = Arrays.<Object>asList(object, null);
+
+        final LDValue expected = LDValue.buildArray()
+                .add(LDValue.buildObject()
+                        .put("list", LDValue.buildArray().add(1).add(2.5).add("three").add(false).build())
+                        .put("long", 5000000000L)
+                        .build())
+                .add(LDValue.ofNull())
+                .build();
+
+        Assert.assertEquals(expected, LDValueEncoder.decode(value));
+        Assert.assertEquals(value, LDValueEncoder.encode(LDValueEncoder.decode(value)));
+    }
+}
@@ -1,15 +1,19 @@
 package com.oakam.launchdarkly_flutter;
 
 import com.launchdarkly.sdk.LDUser;
+import com.launchdarkly.sdk.LDValue;
 
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
 
 public class LaunchdarklyFlutterPluginTest {
 
@@ -180,4 +184,158 @@ public class LaunchdarklyFlutterPluginTest {
 
         Assert.assertEquals(expected, actual);
     }
+
+    @Test
+    public void testCreateUserReusesUserForSameArguments() {
+        final Map<String, Object> custom = new HashMap<>();
+        custom.put("plan", "pro");
+
+        final Map<String, Object> arguments = new HashMap<>();
+        arguments.put("userKey", "testUserID");
+        arguments.put("custom", custom);
+        arguments.put("privateAttributes", new ArrayList<String>());
+
+        final LDUser user = plugin.createUser(new MethodCall("identify", arguments));
+
+        Assert.assertSame(user, plugin.createUser(new MethodCall("identify", new HashMap<>(arguments))));
+
+        arguments.put("userKey", "otherUserID");
+        Assert.assertNotSame(user, plugin.createUser(new MethodCall("identify", arguments)));
+    }
+
+    @Test
+    public void testAnonymousUserKeyIsReused() {
+        final Map<String, Object> arguments = new HashMap<>();
+        arguments.put("userKey", null);
+        final LDUser user = plugin.createUser(new MethodCall("identify", arguments));
+
+        final Map<String, String> userAttributes = new HashMap<>();
+        userAttributes.put("country", "GB");
+        arguments.put("user", userAttributes);
+        final LDUser otherUser = plugin.createUser(new MethodCall("identify", arguments));
+
+        Assert.assertTrue(user.isAnonymous());
+        Assert.assertTrue(otherUser.isAnonymous());
+        Assert.assertEquals(user.getKey(), otherUser.getKey());
+    }
+
+    @Test
+    public void testVariationFromSnapshot() {
+        final Map<String, LDValue> flagValues = new HashMap<>();
+        flagValues.put("bool", LDValue.of(true));
+        flagValues.put("string", LDValue.of("value"));
+        flagValues.put("int", LDValue.of(3));
+        flagValues.put("double", LDValue.of(2.5));
+        flagValues.put("json", LDValue.buildArray().add(1).add("two").build());
+
+        Assert.assertEquals(true, LaunchdarklyFlutterPlugin.variationFromSnapshot(flagValues, "bool", "bool", false));
+        Assert.assertEquals("value", LaunchdarklyFlutterPlugin.variationFromSnapshot(flagValues, "string", "string", null));
+        Assert.assertEquals(3, LaunchdarklyFlutterPlugin.variationFromSnapshot(flagValues, "int", "int", 0));
+        Assert.assertEquals(2.5, LaunchdarklyFlutterPlugin.variationFromSnapshot(flagValues, "double", "double", 0.0));
+        Assert.assertEquals(Arrays.<Object>asList(1, "two"), LaunchdarklyFlutterPlugin.variationFromSnapshot(flagValues, "json", "json", null));
+    }
+
+    @Test
+    public void testVariationFromSnapshotFallback() {
+        final Map<String, LDValue> flagValues = new HashMap<>();
+        flagValues.put("string", LDValue.of("value"));
+
+        Assert.assertEquals(false, LaunchdarklyFlutterPlugin.variationFromSnapshot(flagValues, "string", "bool", false));
+        Assert.assertEquals("fallback", LaunchdarklyFlutterPlugin.variationFromSnapshot(flagValues, "missing", "string", "fallback"));
+    }
+
+    @Test
+    public void testListenersCanBeUnregisteredOnce() {
+        final Map<String, Object> flagArguments = new HashMap<>();
+        flagArguments.put("flagKey", "flagKey");
+        final Map<String, Object> allFlagsArguments = new HashMap<>();
+        allFlagsArguments.put("listenerId", "listenerId");
+
+        Assert.assertEquals(true, invoke("registerFeatureFlagListener", flagArguments));
+        Assert.assertEquals(true, invoke("registerAllFlagsListener", allFlagsArguments));
+
+        Assert.assertEquals(true, invoke("unregisterFeatureFlagListener", flagArguments));
+        Assert.assertEquals(false, invoke("unregisterFeatureFlagListener", flagArguments));
+        Assert.assertEquals(true, invoke("unregisterAllFlagsListener", allFlagsArguments));
+        Assert.assertEquals(false, invoke("unregisterAllFlagsListener", allFlagsArguments));
+    }
+
+    @Test
+    public void testMethodHandlersCanBeRegistered() {
+        plugin.registerMethodHandler("flagsVersion", new MethodChannel.MethodCallHandler() {
+            @Override
+            public void onMethodCall(MethodCall call, MethodChannel.Result result) {
+                result.success(call.argument("answer"));
+            }
+        });
+
+        Assert.assertEquals(42, invoke("flagsVersion", Collections.singletonMap("answer", 42)));
+    }
+
+    @Test
+    public void testUnknownMethodIsNotImplemented() {
+        final boolean[] notImplemented = new boolean[1];
+        plugin.onMethodCall(new MethodCall("unknownMethod", null), new MethodChannel.Result() {
+            @Override
+            public void success(Object result) {
+                Assert.fail("unexpected reply");
+            }
+
+            @Override
+            public void error(String errorCode, String errorMessage, Object errorDetails) {
+                Assert.fail(errorCode);
+            }
+
+            @Override
+            public void notImplemented() {
+                notImplemented[0] = true;
+            }
+        });
+
+        Assert.assertTrue(notImplemented[0]);
+    }
+
+    @Test
+    public void testUnknownEnvironmentIsRejected() {
+        final String[] error = new String[1];
+        plugin.onMethodCall(new MethodCall("allFlags", Collections.singletonMap("environment", "platform")), new MethodChannel.Result() {
+            @Override
+            public void success(Object result) {
+                Assert.fail("unexpected reply");
+            }
+
+            @Override
+            public void error(String errorCode, String errorMessage, Object errorDetails) {
+                error[0] = errorCode;
+            }
+
+            @Override
+            public void notImplemented() {
+                Assert.fail("allFlags not implemented");
+            }
+        });
+
+        Assert.assertEquals("unknown environment", error[0]);
+    }
+
+    private Object invoke(final String method, Object arguments) {
+        final Object[] reply = new Object[1];
+        plugin.onMethodCall(new MethodCall(method, arguments), new MethodChannel.Result() {
+            @Override
+            public void success(Object result) {
+                reply[0] = result;
+            }
+
+            @Override
+            public void error(String errorCode, String errorMessage, Object errorDetails) {
+                Assert.fail(errorCode);
+            }
+
+            @Override
+            public void notImplemented() {
+                Assert.fail(method + " not implemented");
+            }
+        });
+        return reply[0];
+    }
 }
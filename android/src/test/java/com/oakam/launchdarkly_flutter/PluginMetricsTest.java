@@ -0,0 +1,85 @@
+package com.oakam.launchdarkly_flutter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import io.flutter.plugin.common.MethodChannel;
+
+public class PluginMetricsTest {
+
+    private final PluginMetrics metrics = new PluginMetrics();
+
+    private final MethodChannel.Result result = new MethodChannel.Result() {
+        @Override
+        public void success(Object result) {
+        }
+
+        @Override
+        public void error(String errorCode, String errorMessage, Object errorDetails) {
+        }
+
+        @Override
+        public void notImplemented() {
+        }
+    };
+
+    @Test
+    public void testHistogramBuckets() {
+        final Histogram histogram = new Histogram();
+        histogram.record(0);
+        histogram.record(1);
+        histogram.record(3);
+        histogram.record(8);
+
+        final Map<String, Object> encoded = histogram.toMap();
+        Assert.assertEquals(4L, encoded.get("count"));
+        Assert.assertEquals(12L, encoded.get("sum"));
+        Assert.assertEquals(8L, encoded.get("max"));
+        Assert.assertEquals(Arrays.asList(2L, 1L, 0L, 1L), encoded.get("buckets"));
+    }
+
+    @Test
+    public void testNothingIsRecordedWhenDisabled() {
+        Assert.assertSame(result, metrics.instrument("allFlags", result));
+
+        metrics.recordConvertedFlags(10);
+        metrics.recordDroppedCallback();
+
+        final Map<String, Object> encoded = metrics.toMap();
+        Assert.assertEquals(false, encoded.get("enabled"));
+        Assert.assertTrue(((Map<?, ?>) encoded.get("methods")).isEmpty());
+        Assert.assertEquals(0L, ((Map<?, ?>) encoded.get("convertedFlagCounts")).get("count"));
+        Assert.assertEquals(0L, encoded.get("droppedCallbacks"));
+    }
+
+    @Test
+    public void testMethodCallsAreRecorded() {
+        metrics.setEnabled(true);
+
+        metrics.instrument("allFlags", result).success(null);
+        metrics.instrument("allFlags", result).error("error", null, null);
+        metrics.instrument("identify", result).success(true);
+        metrics.recordDroppedCallback();
+        metrics.recordFailedEvent();
+        metrics.recordFlagChangePayload(12);
+        metrics.recordEncodedFlagPayload(Collections.singletonMap("flagKey", true));
+
+        final Map<?, ?> methods = (Map<?, ?>) metrics.toMap().get("methods");
+        final Map<?, ?> allFlags = (Map<?, ?>) methods.get("allFlags");
+        Assert.assertEquals(2L, allFlags.get("count"));
+        Assert.assertEquals(1L, allFlags.get("errors"));
+        Assert.assertEquals(1L, ((Map<?, ?>) methods.get("identify")).get("count"));
+        Assert.assertEquals(1L, metrics.toMap().get("droppedCallbacks"));
+        Assert.assertEquals(1L, metrics.toMap().get("failedEvents"));
+        Assert.assertEquals(0L, metrics.toMap().get("failedFlushes"));
+        Assert.assertEquals(1L, ((Map<?, ?>) metrics.toMap().get("flagChangePayloadBytes")).get("count"));
+        Assert.assertEquals(1L, ((Map<?, ?>) metrics.toMap().get("flagPayloadBytes")).get("count"));
+
+        metrics.reset();
+        Assert.assertTrue(((Map<?, ?>) metrics.toMap().get("methods")).isEmpty());
+    }
+}
@@ -50,12 +50,12 @@ import LaunchDarkly
   public func handle(_ call: FlutterMethodCall, result: @escaping FlutterResult)  {
     let arguments = call.arguments as? [String:Any] ?? [:]
     
-    if (call.method == "init") {
+    if (call.method == "init" || call.method == "initAsync") {
         
         let mobileKey = arguments["mobileKey"] as? String
         
         if (mobileKey ?? "").isEmpty {
-            result(false)
+            result(call.method == "init" ? false : nil)
             return
         }
         
@@ -65,8 +65,17 @@ import LaunchDarkly
         config.allUserAttributesPrivate = configArgs["allAttributesPrivate"] as? Bool ?? false
         config.privateUserAttributes = configArgs["privateAttributes"] as? [String]
         
-        LDClient.start(config: config, user: createUser(arguments: arguments), startWaitSeconds: 5) { timedOut in
-            result(true)
+        let reportStatus = call.method == "initAsync"
+        let timeoutMillis = arguments["timeoutMillis"] as? Int ?? 5000
+        
+        LDClient.start(config: config, user: createUser(arguments: arguments), startWaitSeconds: TimeInterval(timeoutMillis) / 1000) { timedOut in
+            if (!reportStatus) {
+                result(true)
+            } else if (!timedOut) {
+                result("network")
+            } else {
+                result((LDClient.get()?.allFlags ?? [:]).isEmpty ? "timeout" : "cache")
+            }
         }
         
     } else if (call.method == "identify") {
@@ -21,5 +21,83 @@ extension _LaunchDarklyConfigSerializer on LaunchDarklyConfig {
   Map<String, dynamic> toMap() => {
         'allAttributesPrivate': allAttributesPrivate,
         'privateAttributes': privateAttributes.toList(),
+        'eventsFlushIntervalMillis': eventsFlushInterval?.inMilliseconds,
+        'eventsCapacity': eventsCapacity,
+        'pollingIntervalMillis': pollingInterval?.inMilliseconds,
+        'backgroundPollingIntervalMillis':
+            backgroundPollingInterval?.inMilliseconds,
+        'connectionTimeoutMillis': connectionTimeout?.inMilliseconds,
+        'stream': stream,
+        'diagnosticOptOut': diagnosticOptOut,
+        'evaluationReasons': evaluationReasons,
+        'secondaryMobileKeys': secondaryMobileKeys,
       };
 }
+
+extension _LaunchDarklyVariationRequestSerializer
+    on LaunchDarklyVariationRequest {
+  /// The method of serialization to a map.
+  /// Intended to use to pass over the MethodChannel.
+  Map<String, dynamic> toMap() => {
+        'flagKey': flagKey,
+        'type': _flagTypeNames[type],
+        'fallback': fallback,
+      };
+}
+
+extension _LaunchDarklyEventSerializer on LaunchDarklyEvent {
+  /// The method of serialization to a map.
+  /// Intended to use to pass over the MethodChannel.
+  Map<String, dynamic> toMap() => {
+        'eventName': name,
+        'data': data,
+        'metricValue': metricValue,
+      };
+}
+
+const Map<LaunchDarklyFlagType, String> _flagTypeNames = {
+  LaunchDarklyFlagType.boolean: 'bool',
+  LaunchDarklyFlagType.string: 'string',
+  LaunchDarklyFlagType.integer: 'int',
+  LaunchDarklyFlagType.double: 'double',
+  LaunchDarklyFlagType.json: 'json',
+};
+
+/// The method of deserialization of a flag change received over the MethodChannel.
+LaunchDarklyFlagChange _flagChangeFromMap(Map<dynamic, dynamic> change) =>
+    LaunchDarklyFlagChange(
+      change['flagKey'],
+      type: change['type'],
+      value: change['value'],
+      oldValue: change['oldValue'],
+    );
+
+/// The method of deserialization of an evaluation detail received over the MethodChannel.
+LaunchDarklyEvaluationDetail<T> _evaluationDetailFromMap<T>(
+    Map<dynamic, dynamic> detail) {
+  final Map<dynamic, dynamic>? reason = detail['reason'];
+  return LaunchDarklyEvaluationDetail<T>(
+    detail['value'],
+    variationIndex: detail['variationIndex'],
+    reason: reason == null
+        ? null
+        : LaunchDarklyEvaluationReason(
+            reason['kind'],
+            ruleIndex: reason['ruleIndex'],
+            ruleId: reason['ruleId'],
+            prerequisiteKey: reason['prerequisiteKey'],
+            errorKind: reason['errorKind'],
+          ),
+  );
+}
+
+/// The method of deserialization of a batch of flag changes received over the EventChannel.
+LaunchDarklyFlagChangeBatch _flagChangeBatchFromMap(
+        Map<dynamic, dynamic> batch) =>
+    LaunchDarklyFlagChangeBatch(
+      List<Map<dynamic, dynamic>>.from(batch['changes'])
+          .map(_flagChangeFromMap)
+          .toList(),
+      batch['version'],
+      batch['dropped'],
+    );
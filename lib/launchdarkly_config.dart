@@ -7,10 +7,66 @@ class LaunchDarklyConfig {
   /// This can also be specified on a per-user basis, please refer to [LaunchDarklyUser].
   final Set<String> privateAttributes;
 
+  /// How often analytics events are sent to LaunchDarkly. `null` keeps the SDK default.
+  /// (Android only)
+  final Duration? eventsFlushInterval;
+
+  /// How many analytics events are held before they are sent. `null` keeps the SDK default.
+  /// (Android only)
+  final int? eventsCapacity;
+
+  /// How often flags are polled when streaming is off, at least 5 minutes.
+  /// `null` keeps the SDK default. (Android only)
+  final Duration? pollingInterval;
+
+  /// How often flags are polled while the app is in the background, at least 15 minutes.
+  /// `null` keeps the SDK default. (Android only)
+  final Duration? backgroundPollingInterval;
+
+  /// Timeout of connections to LaunchDarkly. `null` keeps the SDK default. (Android only)
+  final Duration? connectionTimeout;
+
+  /// Whether flag updates are streamed rather than polled. `null` keeps the SDK default, streaming.
+  /// (Android only)
+  final bool? stream;
+
+  /// Whether diagnostic data is withheld from LaunchDarkly. `null` keeps the SDK default.
+  /// (Android only)
+  final bool? diagnosticOptOut;
+
+  /// Whether evaluation reasons are requested along with flag values. `null` keeps the SDK default,
+  /// off, as reasons make every flag payload larger. The `*VariationDetail` methods of
+  /// [LaunchdarklyFlutter] need them to explain values other than errors. (Android only)
+  final bool? evaluationReasons;
+
+  /// Mobile keys of secondary environments, by environment name. The flag and event methods of
+  /// [LaunchdarklyFlutter] take the name as their `environment` argument, and the primary
+  /// environment is also named `default`. All environments share one connection and event pipeline.
+  /// (Android only)
+  final Map<String, String> secondaryMobileKeys;
+
   /// Constructor for creating a LaunchDarkly config.
-  /// All parameters are optional.
+  /// All parameters are optional. Invalid values make the init fail with an `invalid config` error.
   const LaunchDarklyConfig({
     this.allAttributesPrivate = false,
     this.privateAttributes = const {},
+    this.eventsFlushInterval,
+    this.eventsCapacity,
+    this.pollingInterval,
+    this.backgroundPollingInterval,
+    this.connectionTimeout,
+    this.stream,
+    this.diagnosticOptOut,
+    this.evaluationReasons,
+    this.secondaryMobileKeys = const {},
   });
-}
\ No newline at end of file
+}
+
+/// How the client receives flag updates, see [LaunchdarklyFlutter.setConnectionMode].
+enum LaunchDarklyConnectionMode {
+  /// Flag updates are pushed over a streaming connection.
+  streaming,
+
+  /// Flags are polled at the polling interval.
+  polling,
+}
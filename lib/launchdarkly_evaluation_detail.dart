@@ -0,0 +1,59 @@
+/// The result of a flag evaluation along with how it was reached.
+class LaunchDarklyEvaluationDetail<T> {
+  /// The flag value for the current user, or the fallback if it could not be evaluated.
+  final T value;
+
+  /// Index of the returned variation in the flag's list of variations,
+  /// `null` when the fallback was returned.
+  final int? variationIndex;
+
+  /// Why the flag evaluated to [value].
+  final LaunchDarklyEvaluationReason? reason;
+
+  /// Constructor for creating an evaluation detail.
+  const LaunchDarklyEvaluationDetail(
+    this.value, {
+    this.variationIndex,
+    this.reason,
+  });
+
+  /// Whether the fallback was returned instead of one of the flag's variations.
+  bool get isFallback => variationIndex == null;
+}
+
+/// Describes why a flag evaluated to a given value.
+class LaunchDarklyEvaluationReason {
+  /// `OFF`, `FALLTHROUGH`, `TARGET_MATCH`, `RULE_MATCH`, `PREREQUISITE_FAILED` or `ERROR`.
+  final String kind;
+
+  /// Index of the matched rule, for `RULE_MATCH`.
+  final int? ruleIndex;
+
+  /// Id of the matched rule, for `RULE_MATCH`.
+  final String? ruleId;
+
+  /// Key of the prerequisite flag that failed, for `PREREQUISITE_FAILED`.
+  final String? prerequisiteKey;
+
+  /// What went wrong, for `ERROR`: `CLIENT_NOT_READY`, `FLAG_NOT_FOUND`, `MALFORMED_FLAG`,
+  /// `USER_NOT_SPECIFIED`, `WRONG_TYPE` or `EXCEPTION`.
+  final String? errorKind;
+
+  /// Constructor for creating an evaluation reason.
+  const LaunchDarklyEvaluationReason(
+    this.kind, {
+    this.ruleIndex,
+    this.ruleId,
+    this.prerequisiteKey,
+    this.errorKind,
+  });
+
+  /// The reason in LaunchDarkly's JSON representation, e.g. for logging.
+  Map<String, dynamic> toMap() => {
+        'kind': kind,
+        if (ruleIndex != null) 'ruleIndex': ruleIndex,
+        if (ruleId != null) 'ruleId': ruleId,
+        if (prerequisiteKey != null) 'prerequisiteKey': prerequisiteKey,
+        if (errorKind != null) 'errorKind': errorKind,
+      };
+}
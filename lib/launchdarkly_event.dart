@@ -0,0 +1,18 @@
+/// A custom analytics event, see [LaunchdarklyFlutter.trackMany].
+class LaunchDarklyEvent {
+  /// Key of the event, as defined in LaunchDarkly.
+  final String name;
+
+  /// Optional JSON data attached to the event (`null`, `bool`, `num`, `String`, `List` or `Map`).
+  final dynamic data;
+
+  /// Optional numeric value, used by numeric metrics in experiments.
+  final num? metricValue;
+
+  /// Constructor for creating a custom event.
+  const LaunchDarklyEvent(
+    this.name, {
+    this.data,
+    this.metricValue,
+  });
+}
@@ -0,0 +1,53 @@
+/// A change of a feature flag, as pushed by the native client when it observed it.
+class LaunchDarklyFlagChange {
+  /// Key of the flag that changed.
+  final String flagKey;
+
+  /// JSON type of the new value: `null`, `boolean`, `number`, `string`, `array` or `object`.
+  /// It is `null` when the flag was deleted.
+  final String? type;
+
+  /// The flag value after the change, `null` when the flag was deleted.
+  final dynamic value;
+
+  /// The flag value before the change, `null` when the flag did not exist before.
+  final dynamic oldValue;
+
+  /// Constructor for creating a flag change.
+  const LaunchDarklyFlagChange(
+    this.flagKey, {
+    this.type,
+    this.value,
+    this.oldValue,
+  });
+
+  /// Whether the flag was deleted.
+  bool get deleted => type == null;
+}
+
+/// What the native side drops when flag changes arrive faster than a
+/// [LaunchdarklyFlutter.flagChanges] listener receives them.
+enum LaunchDarklyFlagChangeOverflow {
+  /// Drops the oldest buffered change.
+  dropOldest,
+
+  /// Keeps only the latest change of each flag, and drops the least recently
+  /// changed flag when more flags changed than fit in the buffer.
+  latestPerKey,
+}
+
+/// Flag changes delivered together by [LaunchdarklyFlutter.flagChanges].
+class LaunchDarklyFlagChangeBatch {
+  /// The changes, oldest first.
+  final List<LaunchDarklyFlagChange> changes;
+
+  /// Version of the flag values the changes were read at.
+  final int version;
+
+  /// Number of changes dropped since the previous batch because the buffer was full.
+  /// When it is not zero, the changes are incomplete and flags should be read again.
+  final int dropped;
+
+  /// Constructor for creating a batch of flag changes.
+  const LaunchDarklyFlagChangeBatch(this.changes, this.version, this.dropped);
+}
@@ -0,0 +1,113 @@
+part of "launchdarkly_flutter.dart";
+
+/// An in-memory copy of the current user's flags that can be read synchronously,
+/// e.g. from a widget's `build` method, without a platform call.
+///
+/// It is seeded from a single native snapshot by [LaunchdarklyFlutter.openFlagStore]
+/// and then kept up to date by the flag changes pushed from the native side. Listeners
+/// are notified whenever a flag value changes. (Android only)
+///
+/// Like [LaunchdarklyFlutter.allFlags], reading flags from the store sends no events to LaunchDarkly.
+class LaunchDarklyFlagStore extends ChangeNotifier {
+  LaunchDarklyFlagStore._(this._client);
+
+  final LaunchdarklyFlutter _client;
+  final LaunchDarklyFlagsSnapshot _snapshot = LaunchDarklyFlagsSnapshot();
+
+  // Changes pushed while a sync is in progress, applied once it completes.
+  List<_PushedFlagChanges>? _pendingPushes;
+
+  /// The native flag version the store is in sync with, `null` until it was seeded.
+  int? get version => _snapshot.version;
+
+  /// All flag values, keyed by flag key.
+  Map<String, dynamic> get flags => _snapshot.flags;
+
+  /// Returns the value of [flagKey] if it is a boolean, [fallback] otherwise.
+  bool boolVariation(String flagKey, bool fallback) {
+    final dynamic value = _snapshot._flags[flagKey];
+    return value is bool ? value : fallback;
+  }
+
+  /// Returns the value of [flagKey] if it is a string, [fallback] otherwise.
+  String? stringVariation(String flagKey, String? fallback) {
+    final dynamic value = _snapshot._flags[flagKey];
+    return value is String ? value : fallback;
+  }
+
+  /// Returns the value of [flagKey] truncated to an integer if it is a number, [fallback] otherwise.
+  int intVariation(String flagKey, int fallback) {
+    final dynamic value = _snapshot._flags[flagKey];
+    return value is num ? value.toInt() : fallback;
+  }
+
+  /// Returns the value of [flagKey] if it is a number, [fallback] otherwise.
+  double doubleVariation(String flagKey, double fallback) {
+    final dynamic value = _snapshot._flags[flagKey];
+    return value is num ? value.toDouble() : fallback;
+  }
+
+  /// Returns the JSON value of [flagKey], or [fallback] if the flag is missing or `null`.
+  dynamic jsonVariation(String flagKey, dynamic fallback) =>
+      _snapshot._flags[flagKey] ?? fallback;
+
+  /// Whether the native side has seen flag changes the store does not reflect yet.
+  /// Pushed changes are delayed by about a frame, so callers needing strong consistency
+  /// can check this, and [refresh] the store if it is stale.
+  Future<bool> isStale() async {
+    final int? nativeVersion =
+        await LaunchdarklyFlutter._channel.invokeMethod('flagsVersion');
+    return version == null || nativeVersion != version;
+  }
+
+  /// Brings the store up to date with the native flags right away,
+  /// only transferring the flags that changed since [version].
+  /// Returns the keys of the flags that changed.
+  Future<Set<String>> refresh() async {
+    final List<_PushedFlagChanges> pendingPushes = _pendingPushes ??= [];
+    Set<String> changedKeys;
+    try {
+      changedKeys = await _client.syncFlags(_snapshot);
+    } finally {
+      _pendingPushes = null;
+    }
+    pendingPushes.forEach((push) {
+      if (_apply(push.changes, push.version)) {
+        changedKeys.addAll(push.changes.map((change) => change.flagKey));
+      }
+    });
+    if (changedKeys.isNotEmpty) {
+      notifyListeners();
+    }
+    return changedKeys;
+  }
+
+  void _onFlagsChanged(List<LaunchDarklyFlagChange> changes, int? version) {
+    if (version == null) {
+      return;
+    }
+    if (_pendingPushes != null) {
+      _pendingPushes!.add(_PushedFlagChanges(changes, version));
+      return;
+    }
+    if (_apply(changes, version)) {
+      notifyListeners();
+    }
+  }
+
+  // Pushes at or below the store's version are already reflected by the last sync.
+  bool _apply(List<LaunchDarklyFlagChange> changes, int version) {
+    if (_snapshot.version == null || version <= _snapshot.version!) {
+      return false;
+    }
+    _snapshot._applyChanges(changes, version);
+    return true;
+  }
+}
+
+class _PushedFlagChanges {
+  _PushedFlagChanges(this.changes, this.version);
+
+  final List<LaunchDarklyFlagChange> changes;
+  final int version;
+}
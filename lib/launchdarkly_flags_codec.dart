@@ -0,0 +1,201 @@
+part of "launchdarkly_flutter.dart";
+
+/// Encodes requests for, and decodes replies of, the `launchdarkly_flutter/flags` channel.
+/// Flag keys are interned by the native side and only sent the first time they are used,
+/// so the decoder keeps the keys it has seen for the whole session.
+/// See `FlagPayloadCodec` on the Android side for the layout.
+class _FlagPayloadCodec {
+  static const int opAllFlags = 1;
+  static const int opChangesSince = 2;
+
+  static const int _format = 1;
+  static const int _formatChanges = 2;
+
+  static const int _tagNull = 0;
+  static const int _tagFalse = 1;
+  static const int _tagTrue = 2;
+  static const int _tagInt = 3;
+  static const int _tagDouble = 4;
+  static const int _tagString = 5;
+  static const int _tagArray = 6;
+  static const int _tagObject = 7;
+  static const int _tagRemoved = 8;
+
+  final List<String> _flagKeys = [];
+
+  ByteData encodeRequest(int op, {int? sinceVersion}) {
+    final List<int> bytes = [op];
+    _writeVarint(bytes, _flagKeys.length);
+    if (sinceVersion != null) {
+      _writeVarint(bytes, sinceVersion);
+    }
+    return Uint8List.fromList(bytes).buffer.asByteData();
+  }
+
+  /// Decodes a reply into the same shape as the `allFlagsSince` method reply.
+  Map<String, dynamic> decodeReply(ByteData data) {
+    final _FlagPayloadReader reader = _FlagPayloadReader(data);
+
+    final int format = reader.readUint8();
+    if (format != _format) {
+      throw FormatException('Unsupported flag payload format $format');
+    }
+    final int version = reader.readVarint();
+    final bool full = reader.readUint8() == 1;
+
+    final int firstNewKeyId = reader.readVarint();
+    final int newKeyCount = reader.readVarint();
+    if (firstNewKeyId > _flagKeys.length) {
+      throw FormatException('Flag payload refers to unknown flag keys');
+    }
+    _flagKeys.length = firstNewKeyId;
+    for (int i = 0; i < newKeyCount; i++) {
+      _flagKeys.add(reader.readString());
+    }
+
+    final int entryCount = reader.readVarint();
+    final Map<String, dynamic> flags = {};
+    final List<String> removed = [];
+    for (int i = 0; i < entryCount; i++) {
+      final String flagKey = _flagKeys[reader.readVarint()];
+      final int tag = reader.readUint8();
+      if (tag == _tagRemoved) {
+        removed.add(flagKey);
+      } else {
+        flags[flagKey] = _readValue(reader, tag);
+      }
+    }
+
+    return {
+      'version': version,
+      'full': full,
+      'flags': flags,
+      'removed': removed,
+    };
+  }
+
+  /// Decodes a batch of pushed flag changes into its `version` and `changes`.
+  /// A decoder must only read the pushes of one channel, in order, as the keys
+  /// sent along are the ones new since the previous push.
+  Map<String, dynamic> decodeChanges(ByteData data) {
+    final _FlagPayloadReader reader = _FlagPayloadReader(data);
+
+    final int format = reader.readUint8();
+    if (format != _formatChanges) {
+      throw FormatException('Unsupported flag changes format $format');
+    }
+    final int version = reader.readVarint();
+
+    final int firstNewKeyId = reader.readVarint();
+    final int newKeyCount = reader.readVarint();
+    if (firstNewKeyId > _flagKeys.length) {
+      throw FormatException('Flag changes refer to unknown flag keys');
+    }
+    _flagKeys.length = firstNewKeyId;
+    for (int i = 0; i < newKeyCount; i++) {
+      _flagKeys.add(reader.readString());
+    }
+
+    final int entryCount = reader.readVarint();
+    final List<LaunchDarklyFlagChange> changes = [];
+    for (int i = 0; i < entryCount; i++) {
+      final String flagKey = _flagKeys[reader.readVarint()];
+      final int tag = reader.readUint8();
+      final dynamic value = tag == _tagRemoved ? null : _readValue(reader, tag);
+      final int oldTag = reader.readUint8();
+      final dynamic oldValue =
+          oldTag == _tagRemoved ? null : _readValue(reader, oldTag);
+      changes.add(LaunchDarklyFlagChange(flagKey,
+          type: _typeNames[tag], value: value, oldValue: oldValue));
+    }
+
+    return {'version': version, 'changes': changes};
+  }
+
+  // Same names as the `type` of a change sent as a map; a removed flag has none.
+  static const Map<int, String> _typeNames = {
+    _tagNull: 'null',
+    _tagFalse: 'boolean',
+    _tagTrue: 'boolean',
+    _tagInt: 'number',
+    _tagDouble: 'number',
+    _tagString: 'string',
+    _tagArray: 'array',
+    _tagObject: 'object',
+  };
+
+  static dynamic _readValue(_FlagPayloadReader reader, int tag) {
+    switch (tag) {
+      case _tagNull:
+        return null;
+      case _tagFalse:
+        return false;
+      case _tagTrue:
+        return true;
+      case _tagInt:
+        final int zigZag = reader.readVarint();
+        return (zigZag >> 1) ^ -(zigZag & 1);
+      case _tagDouble:
+        return reader.readFloat64();
+      case _tagString:
+        return reader.readString();
+      case _tagArray:
+        final int length = reader.readVarint();
+        return List<dynamic>.generate(
+            length, (_) => _readValue(reader, reader.readUint8()));
+      case _tagObject:
+        final int length = reader.readVarint();
+        final Map<String, dynamic> object = {};
+        for (int i = 0; i < length; i++) {
+          final String key = reader.readString();
+          object[key] = _readValue(reader, reader.readUint8());
+        }
+        return object;
+      default:
+        throw FormatException('Unknown flag value tag $tag');
+    }
+  }
+
+  static void _writeVarint(List<int> bytes, int value) {
+    while (value > 0x7F) {
+      bytes.add((value & 0x7F) | 0x80);
+      value >>= 7;
+    }
+    bytes.add(value);
+  }
+}
+
+class _FlagPayloadReader {
+  final ByteData _data;
+  int _offset = 0;
+
+  _FlagPayloadReader(this._data);
+
+  int readUint8() => _data.getUint8(_offset++);
+
+  int readVarint() {
+    int value = 0;
+    int shift = 0;
+    int byte;
+    do {
+      byte = _data.getUint8(_offset++);
+      value |= (byte & 0x7F) << shift;
+      shift += 7;
+    } while ((byte & 0x80) != 0);
+    return value;
+  }
+
+  double readFloat64() {
+    final double value = _data.getFloat64(_offset);
+    _offset += 8;
+    return value;
+  }
+
+  String readString() {
+    final int length = readVarint();
+    final String value = utf8.decode(
+        Uint8List.view(_data.buffer, _data.offsetInBytes + _offset, length));
+    _offset += length;
+    return value;
+  }
+}
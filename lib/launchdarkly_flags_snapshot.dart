@@ -0,0 +1,46 @@
+part of "launchdarkly_flutter.dart";
+
+/// A local copy of all feature flags for the current user.
+/// It is kept up to date by [LaunchdarklyFlutter.syncFlags], which only transfers the flags
+/// that changed since the snapshot's [version].
+class LaunchDarklyFlagsSnapshot {
+  int? _version;
+  final Map<String, dynamic> _flags = {};
+
+  /// The native snapshot version this copy is in sync with, `null` if it was never synced.
+  int? get version => _version;
+
+  /// The flag values, keyed by flag key.
+  Map<String, dynamic> get flags => Map<String, dynamic>.unmodifiable(_flags);
+
+  /// Applies the reply of the native `allFlagsSince` method.
+  /// Returns the keys of the flags whose values were replaced or removed.
+  Set<String> _apply(Map<dynamic, dynamic> changes) {
+    final Map<String, dynamic> flags =
+        Map<String, dynamic>.from(changes['flags'] ?? {});
+    final List<String> removed = List<String>.from(changes['removed'] ?? []);
+
+    final Set<String> changedKeys = {...flags.keys, ...removed};
+    if (changes['full'] == true) {
+      changedKeys.addAll(_flags.keys);
+      _flags.clear();
+    }
+    _flags.addAll(flags);
+    removed.forEach(_flags.remove);
+    _version = changes['version'];
+
+    return changedKeys;
+  }
+
+  /// Applies flag changes pushed by the native side at [version].
+  void _applyChanges(List<LaunchDarklyFlagChange> changes, int version) {
+    changes.forEach((change) {
+      if (change.deleted) {
+        _flags.remove(change.flagKey);
+      } else {
+        _flags[change.flagKey] = change.value;
+      }
+    });
+    _version = version;
+  }
+}
@@ -1,32 +1,163 @@
 import 'dart:async';
+import 'dart:convert';
+import 'dart:typed_data';
 
 import 'package:flutter/cupertino.dart';
 import 'package:flutter/services.dart';
 import 'package:launchdarkly_flutter/launchdarkly_config.dart';
+import 'package:launchdarkly_flutter/launchdarkly_evaluation_detail.dart';
+import 'package:launchdarkly_flutter/launchdarkly_event.dart';
+import 'package:launchdarkly_flutter/launchdarkly_flag_change.dart';
 import 'package:launchdarkly_flutter/launchdarkly_user.dart';
+import 'package:launchdarkly_flutter/launchdarkly_variation.dart';
 
 part 'launch_darkly_extensions.dart';
+part 'launchdarkly_flag_store.dart';
+part 'launchdarkly_flags_codec.dart';
+part 'launchdarkly_flags_snapshot.dart';
+
+/// Where the flag values came from when [LaunchdarklyFlutter.initWithStatus] completed.
+enum LaunchDarklyInitStatus {
+  /// The client received its first flag payload from LaunchDarkly.
+  network,
+
+  /// The client started offline, or the timeout expired before LaunchDarkly answered.
+  /// Flag values cached from a previous session are used meanwhile.
+  cache,
+
+  /// The timeout expired and no flag values are available yet, variations return their fallbacks.
+  timeout,
+}
 
 /// Client for accessing LaunchDarkly's Feature Flag system.
 class LaunchdarklyFlutter {
   Map<String, void Function(String?)>? flagListeners;
   Map<String, void Function(List<String>)>? allFlagsListeners;
+  Map<String, void Function(LaunchDarklyFlagChange)>? flagChangeListeners;
+  Map<String, void Function(List<LaunchDarklyFlagChange>)>?
+      allFlagChangesListeners;
+  final bool binaryFlagPayloads;
+  final Map<String, dynamic> _latestFlagValues = {};
   static const MethodChannel _channel =
       const MethodChannel('launchdarkly_flutter');
+  static const BasicMessageChannel<ByteData> _flagsChannel =
+      const BasicMessageChannel<ByteData>(
+          'launchdarkly_flutter/flags', BinaryCodec());
+  static const EventChannel _flagChangesChannel =
+      const EventChannel('launchdarkly_flutter/flagChanges');
+  static final _FlagPayloadCodec _flagPayloadCodec = _FlagPayloadCodec();
+  // Decodes binary callbackFlagsChanged pushes, which intern their keys apart from the flags channel.
+  final _FlagPayloadCodec _flagChangesCodec = _FlagPayloadCodec();
+  static const String _flagStoreListenerId = 'launchdarkly_flutter.flagStore';
+  LaunchDarklyFlagStore? _flagStore;
+  // Listeners registered with a listenerId, by flag key and then by id.
+  final Map<String, Map<String, void Function(String?)>> _flagListenersById =
+      {};
+  final Map<String, Map<String, void Function(LaunchDarklyFlagChange)>>
+      _flagChangeListenersById = {};
+  Map<String?, List<LaunchDarklyEvent>>? _pendingEvents;
+  Future<void> _pendingEventsSent = Future<void>.value();
 
   /// Constructor for the Client for accessing LaunchDarkly's Feature Flag system.
   /// The main entry point.
   /// [flagListeners] (optional) is the map of flag keys and callbacks.
-  LaunchdarklyFlutter({this.flagListeners, this.allFlagsListeners}) {
+  /// [flagChangeListeners] and [allFlagChangesListeners] (optional) are the maps of callbacks receiving
+  /// the new and old values along with the changed flags.
+  /// [binaryFlagPayloads] (optional, Android only) makes [allFlags] and [syncFlags] use a dedicated channel
+  /// with a compact binary encoding, where flag keys are only transferred once per session.
+  /// Flag change notifications and [flagChanges] batches then use the same encoding.
+  LaunchdarklyFlutter(
+      {this.flagListeners,
+      this.allFlagsListeners,
+      this.flagChangeListeners,
+      this.allFlagChangesListeners,
+      this.binaryFlagPayloads = false}) {
     flagListeners ??= {};
     allFlagsListeners ??= {};
+    flagChangeListeners ??= {};
+    allFlagChangesListeners ??= {};
 
     _channel.setMethodCallHandler(handlerMethodCalls);
+    // Sent either way: enabling starts the native key table over, matching this
+    // instance's empty decoder, and disabling undoes an earlier instance's choice.
+    _channel.invokeMethod('setBinaryFlagChanges', <String, dynamic>{
+      'enabled': binaryFlagPayloads
+    }).catchError((Object error) {
+      // Plugins without binary notifications keep sending maps.
+    });
   }
 
+  /// The flag values pushed along with the latest change notifications, keyed by flag key.
+  /// It is updated before the listeners are called, so listeners can read the new value of
+  /// a changed flag here instead of asking for it with a variation call.
+  Map<String, dynamic> get latestFlagValues =>
+      Map<String, dynamic>.unmodifiable(_latestFlagValues);
+
   @visibleForTesting
   Future<dynamic> handlerMethodCalls(MethodCall call) async {
     switch (call.method) {
+      case 'callbackFlagsChanged':
+        if (call.arguments == null) {
+          return false;
+        }
+
+        List<LaunchDarklyFlagChange> changes;
+        int? version;
+        if (call.arguments is Uint8List) {
+          final Uint8List payload = call.arguments;
+          final Map<String, dynamic> decoded = _flagChangesCodec.decodeChanges(
+              payload.buffer
+                  .asByteData(payload.offsetInBytes, payload.lengthInBytes));
+          changes = decoded['changes'];
+          version = decoded['version'];
+        } else {
+          if (!call.arguments.containsKey('changes')) {
+            return false;
+          }
+
+          changes = List<Map<dynamic, dynamic>>.from(call.arguments['changes'])
+              .map(_flagChangeFromMap)
+              .toList();
+          version = call.arguments['version'];
+        }
+        List<String> flagKeys =
+            changes.map((change) => change.flagKey).toList();
+
+        changes.forEach((change) {
+          if (change.deleted) {
+            _latestFlagValues.remove(change.flagKey);
+          } else {
+            _latestFlagValues[change.flagKey] = change.value;
+          }
+        });
+        _flagStore?._onFlagsChanged(changes, version);
+
+        changes.forEach((change) {
+          Function(String?)? listener = flagListeners![change.flagKey];
+          if (listener != null) listener(change.flagKey);
+          _flagListenersById[change.flagKey]
+              ?.values
+              .toList()
+              .forEach((listener) => listener(change.flagKey));
+          Function(LaunchDarklyFlagChange)? changeListener =
+              flagChangeListeners![change.flagKey];
+          if (changeListener != null) changeListener(change);
+          _flagChangeListenersById[change.flagKey]
+              ?.values
+              .toList()
+              .forEach((changeListener) => changeListener(change));
+        });
+
+        allFlagsListeners!.values.forEach((allFlagsListener) {
+          allFlagsListener(flagKeys);
+        });
+
+        allFlagChangesListeners!.values.forEach((allFlagChangesListener) {
+          allFlagChangesListener(changes);
+        });
+
+        return true;
+
       case 'callbackRegisterFeatureFlagListener':
         if (call.arguments == null) {
           return false;
@@ -38,12 +169,17 @@ class LaunchdarklyFlutter {
 
         String? flagKey = call.arguments['flagKey'];
 
-        if (!flagListeners!.containsKey(flagKey)) {
+        if (!flagListeners!.containsKey(flagKey) &&
+            !_flagListenersById.containsKey(flagKey)) {
           return false;
         }
 
         Function(String?)? listener = flagListeners![flagKey!];
         if (listener != null) listener(flagKey);
+        _flagListenersById[flagKey]
+            ?.values
+            .toList()
+            .forEach((listener) => listener(flagKey));
         return true;
 
       case 'callbackAllFlagsListener':
@@ -71,9 +207,10 @@ class LaunchdarklyFlutter {
     }
   }
 
-  /// Initializes and blocks for up to 5 seconds
-  /// until the client has been initialized. If the client does not initialize within
-  /// 5 seconds, it is returned anyway and can be used, but may not
+  /// Initializes the client and completes once it has fetched its flags, or after
+  /// 5 seconds, whichever comes first. The native client is started in the background,
+  /// so the platform thread is never blocked. If the client does not initialize within
+  /// 5 seconds, it can be used anyway, but may not
   /// have fetched the most recent feature flag values.
   /// [mobileKey] is the mobile key from your Environments page in LaunchDarkly.
   /// Additional configuration can be set via the optional [config].
@@ -92,8 +229,60 @@ class LaunchdarklyFlutter {
     Map<String, dynamic>? custom,
     Map<String, dynamic>? privateCustom,
   }) async {
+    return await _channel.invokeMethod(
+        'init',
+        _initArguments(mobileKey, userKey,
+            config: config,
+            user: user,
+            custom: custom,
+            privateCustom: privateCustom));
+  }
+
+  /// Same as [init], but waits for at most [timeout] and tells where the flag values
+  /// came from once the returned future completes (see [LaunchDarklyInitStatus]).
+  /// Flag variations requested before this future completes return the values saved for
+  /// the same user by a previous launch on Android, and their fallbacks otherwise. Once the
+  /// live values arrive, registered listeners are told about every flag that differs.
+  Future<LaunchDarklyInitStatus?> initWithStatus(
+    String? mobileKey,
+    String? userKey, {
+    LaunchDarklyConfig? config,
+    LaunchDarklyUser? user,
+    Map<String, dynamic>? custom,
+    Map<String, dynamic>? privateCustom,
+    Duration timeout = const Duration(seconds: 5),
+  }) async {
+    final arguments = _initArguments(mobileKey, userKey,
+        config: config,
+        user: user,
+        custom: custom,
+        privateCustom: privateCustom);
+    arguments['timeoutMillis'] = timeout.inMilliseconds;
+
+    final String? status = await _channel.invokeMethod('initAsync', arguments);
+
+    switch (status) {
+      case 'network':
+        return LaunchDarklyInitStatus.network;
+      case 'cache':
+        return LaunchDarklyInitStatus.cache;
+      case 'timeout':
+        return LaunchDarklyInitStatus.timeout;
+      default:
+        return null;
+    }
+  }
+
+  Map<String, dynamic> _initArguments(
+    String? mobileKey,
+    String? userKey, {
+    LaunchDarklyConfig? config,
+    LaunchDarklyUser? user,
+    Map<String, dynamic>? custom,
+    Map<String, dynamic>? privateCustom,
+  }) {
     if (userKey == null) {
-      return await _channel.invokeMethod('init', <String, dynamic>{
+      return <String, dynamic>{
         'mobileKey': mobileKey,
         'config': config?.toMap(),
         'user': user?.toMap(),
@@ -102,9 +291,9 @@ class LaunchdarklyFlutter {
           if (privateCustom != null) ...privateCustom,
         },
         'privateAttributes': privateCustom?.keys.toList(),
-      });
+      };
     } else {
-      return await _channel.invokeMethod('init', <String, dynamic>{
+      return <String, dynamic>{
         'mobileKey': mobileKey,
         'userKey': userKey,
         'user': user?.toMap(),
@@ -117,7 +306,7 @@ class LaunchdarklyFlutter {
           if (user != null) ...user.privateAttributes,
           if (privateCustom != null) ...privateCustom.keys,
         ],
-      });
+      };
     }
   }
 
@@ -133,24 +322,35 @@ class LaunchdarklyFlutter {
   /// You can pass built-in user attributes as [LaunchDarklyUser] in [user].
   /// You can pass custom attributes and private custom attributes in [custom] and [privateCustom] maps accordingly.
   /// Please note private attributes take precedence over non-private ones.
+  ///
+  /// Completes with true once the flags of the new user are loaded, or with false
+  /// if [timeout] expires first; a zero [timeout] completes with false at once
+  /// unless the flags are already loaded, and a null one waits for them.
+  /// The user is switched either way. If [identify] is called again while a previous call
+  /// is still in progress, only the most recent pending call is applied and the calls
+  /// it replaced complete with false.
   Future<bool?> identify(
     String? userKey, {
     LaunchDarklyUser? user,
     Map<String, dynamic>? custom,
     Map<String, dynamic>? privateCustom,
-  }) =>
-      _channel.invokeMethod('identify', <String, dynamic>{
-        'userKey': userKey,
-        'user': user?.toMap(),
-        'custom': {
-          if (custom != null) ...custom,
-          if (privateCustom != null) ...privateCustom,
-        },
-        'privateAttributes': [
-          if (user != null) ...user.privateAttributes,
-          if (privateCustom != null) ...privateCustom.keys,
-        ],
-      });
+    Duration? timeout,
+  }) {
+    assert(timeout == null || !timeout.isNegative);
+    return _channel.invokeMethod('identify', <String, dynamic>{
+      'userKey': userKey,
+      if (timeout != null) 'timeoutMillis': timeout.inMilliseconds,
+      'user': user?.toMap(),
+      'custom': {
+        if (custom != null) ...custom,
+        if (privateCustom != null) ...privateCustom,
+      },
+      'privateAttributes': [
+        if (user != null) ...user.privateAttributes,
+        if (privateCustom != null) ...privateCustom.keys,
+      ],
+    });
+  }
 
   /// Returns the flag value for the current user. Returns 'fallback' when one of the following occurs:
   /// - Flag is missing
@@ -158,13 +358,21 @@ class LaunchdarklyFlutter {
   /// - Any other error
   /// [flagKey] key for the flag to evaluate
   /// [fallback] fallback value in case of errors evaluating the flag
-  Future<bool?> boolVariation(String flagKey, bool? fallback) async {
+  /// [environment] (optional) name of a secondary environment, see [LaunchDarklyConfig.secondaryMobileKeys]
+  Future<bool?> boolVariation(String flagKey, bool? fallback,
+      {String? environment}) async {
     if (fallback == null) {
-      return await _channel
-          .invokeMethod('boolVariation', <String, dynamic>{'flagKey': flagKey});
+      return await _channel.invokeMethod('boolVariation', <String, dynamic>{
+        'flagKey': flagKey,
+        if (environment != null) 'environment': environment,
+      });
     } else {
       return await _channel.invokeMethod('boolVariationFallback',
-          <String, dynamic>{'flagKey': flagKey, 'fallback': fallback});
+          <String, dynamic>{
+        'flagKey': flagKey,
+        'fallback': fallback,
+        if (environment != null) 'environment': environment,
+      });
     }
   }
 
@@ -174,14 +382,185 @@ class LaunchdarklyFlutter {
   /// - Any other error
   /// [flagKey] key for the flag to evaluate
   /// [fallback] fallback value in case of errors evaluating the flag
-  Future<String?> stringVariation(String flagKey, String? fallback) async {
+  /// [environment] (optional) name of a secondary environment, see [LaunchDarklyConfig.secondaryMobileKeys]
+  Future<String?> stringVariation(String flagKey, String? fallback,
+      {String? environment}) async {
     if (fallback == null) {
-      return await _channel.invokeMethod(
-          'stringVariation', <String, dynamic>{'flagKey': flagKey});
+      return await _channel.invokeMethod('stringVariation', <String, dynamic>{
+        'flagKey': flagKey,
+        if (environment != null) 'environment': environment,
+      });
     } else {
       return await _channel.invokeMethod('stringVariationFallback',
-          <String, dynamic>{'flagKey': flagKey, 'fallback': fallback});
+          <String, dynamic>{
+        'flagKey': flagKey,
+        'fallback': fallback,
+        if (environment != null) 'environment': environment,
+      });
+    }
+  }
+
+  /// Returns the flag value for the current user. Returns 'fallback' when one of the following occurs:
+  /// - Flag is missing
+  /// - The flag is not of a numeric type
+  /// - Any other error
+  /// [flagKey] key for the flag to evaluate
+  /// [fallback] fallback value in case of errors evaluating the flag
+  /// [environment] (optional) name of a secondary environment, see [LaunchDarklyConfig.secondaryMobileKeys]
+  Future<int?> intVariation(String flagKey, int fallback,
+      {String? environment}) async {
+    return await _channel.invokeMethod('intVariation', <String, dynamic>{
+      'flagKey': flagKey,
+      'fallback': fallback,
+      if (environment != null) 'environment': environment,
+    });
+  }
+
+  /// Returns the flag value for the current user. Returns 'fallback' when one of the following occurs:
+  /// - Flag is missing
+  /// - The flag is not of a numeric type
+  /// - Any other error
+  /// [flagKey] key for the flag to evaluate
+  /// [fallback] fallback value in case of errors evaluating the flag
+  /// [environment] (optional) name of a secondary environment, see [LaunchDarklyConfig.secondaryMobileKeys]
+  Future<double?> doubleVariation(String flagKey, double fallback,
+      {String? environment}) async {
+    return await _channel.invokeMethod('doubleVariation', <String, dynamic>{
+      'flagKey': flagKey,
+      'fallback': fallback,
+      if (environment != null) 'environment': environment,
+    });
+  }
+
+  /// Returns the flag value for the current user, which can be any JSON value:
+  /// `null`, `bool`, `num`, `String`, `List` or `Map`. Integers keep their full precision.
+  /// Returns 'fallback' when the flag is missing or on any other error.
+  /// [flagKey] key for the flag to evaluate
+  /// [fallback] fallback value in case of errors evaluating the flag
+  /// [environment] (optional) name of a secondary environment, see [LaunchDarklyConfig.secondaryMobileKeys]
+  Future<dynamic> jsonVariation(String flagKey, dynamic fallback,
+      {String? environment}) async {
+    return await _channel.invokeMethod('jsonVariation', <String, dynamic>{
+      'flagKey': flagKey,
+      'fallback': fallback,
+      if (environment != null) 'environment': environment,
+    });
+  }
+
+  /// Same as [boolVariation], but also tells which variation was returned and why
+  /// (see [LaunchDarklyEvaluationDetail]). Unless the client was started with
+  /// `LaunchDarklyConfig(evaluationReasons: true)`, the reason is only given for errors.
+  Future<LaunchDarklyEvaluationDetail<bool>> boolVariationDetail(
+          String flagKey, bool fallback, {String? environment}) =>
+      _variationDetail<bool>(
+          'boolVariationDetail', flagKey, fallback, environment);
+
+  /// Same as [stringVariation], but also tells which variation was returned and why.
+  /// Reasons need `LaunchDarklyConfig(evaluationReasons: true)`, see [boolVariationDetail].
+  Future<LaunchDarklyEvaluationDetail<String?>> stringVariationDetail(
+          String flagKey, String? fallback, {String? environment}) =>
+      _variationDetail<String?>(
+          'stringVariationDetail', flagKey, fallback, environment);
+
+  /// Same as [intVariation], but also tells which variation was returned and why.
+  /// Reasons need `LaunchDarklyConfig(evaluationReasons: true)`, see [boolVariationDetail].
+  Future<LaunchDarklyEvaluationDetail<int>> intVariationDetail(
+          String flagKey, int fallback, {String? environment}) =>
+      _variationDetail<int>(
+          'intVariationDetail', flagKey, fallback, environment);
+
+  /// Same as [doubleVariation], but also tells which variation was returned and why.
+  /// Reasons need `LaunchDarklyConfig(evaluationReasons: true)`, see [boolVariationDetail].
+  Future<LaunchDarklyEvaluationDetail<double>> doubleVariationDetail(
+          String flagKey, double fallback, {String? environment}) =>
+      _variationDetail<double>(
+          'doubleVariationDetail', flagKey, fallback, environment);
+
+  /// Same as [jsonVariation], but also tells which variation was returned and why.
+  /// Reasons need `LaunchDarklyConfig(evaluationReasons: true)`, see [boolVariationDetail].
+  Future<LaunchDarklyEvaluationDetail<dynamic>> jsonVariationDetail(
+          String flagKey, dynamic fallback, {String? environment}) =>
+      _variationDetail<dynamic>(
+          'jsonVariationDetail', flagKey, fallback, environment);
+
+  Future<LaunchDarklyEvaluationDetail<T>> _variationDetail<T>(String method,
+      String flagKey, dynamic fallback, String? environment) async {
+    Map<dynamic, dynamic> detail =
+        await _channel.invokeMethod(method, <String, dynamic>{
+      'flagKey': flagKey,
+      'fallback': fallback,
+      if (environment != null) 'environment': environment,
+    });
+    return _evaluationDetailFromMap<T>(detail);
+  }
+
+  /// Evaluates many flags in a single platform call, returning the same details as
+  /// [boolVariationDetail] and its siblings, one per entry in [requests], in the same order.
+  /// Unlike [variationBatch], every flag is evaluated by the SDK, so evaluation events are sent.
+  /// Reasons need `LaunchDarklyConfig(evaluationReasons: true)`, see [boolVariationDetail].
+  Future<List<LaunchDarklyEvaluationDetail<dynamic>>> variationDetailBatch(
+      List<LaunchDarklyVariationRequest> requests,
+      {String? environment}) async {
+    if (requests.isEmpty) {
+      return [];
+    }
+
+    List<dynamic> details = await _channel.invokeMethod(
+        'variationDetailBatch', <String, dynamic>{
+      'requests': requests.map((request) => request.toMap()).toList(),
+      if (environment != null) 'environment': environment,
+    });
+    return details
+        .map((detail) => _evaluationDetailFromMap<dynamic>(detail))
+        .toList();
+  }
+
+  /// Brings [snapshot] up to date with the current user's flags.
+  /// Only the flags that changed since the snapshot was last synced are transferred,
+  /// unless the native side no longer knows the snapshot's version, in which case all flags are.
+  /// Returns the keys of the flags that changed. No events are sent to LaunchDarkly.
+  Future<Set<String>> syncFlags(LaunchDarklyFlagsSnapshot snapshot) async {
+    if (binaryFlagPayloads) {
+      return snapshot._apply(snapshot.version == null
+          ? await _requestFlagPayload(_FlagPayloadCodec.opAllFlags)
+          : await _requestFlagPayload(_FlagPayloadCodec.opChangesSince,
+              sinceVersion: snapshot.version));
     }
+
+    Map<dynamic, dynamic> changes = await _channel.invokeMethod(
+        'allFlagsSince', <String, dynamic>{'version': snapshot.version});
+    return snapshot._apply(changes);
+  }
+
+  Future<Map<String, dynamic>> _requestFlagPayload(int op,
+      {int? sinceVersion}) async {
+    final ByteData? reply = await _flagsChannel.send(
+        _flagPayloadCodec.encodeRequest(op, sinceVersion: sinceVersion));
+    if (reply == null) {
+      throw MissingPluginException(
+          'No handler for the launchdarkly_flutter/flags channel');
+    }
+    return _flagPayloadCodec.decodeReply(reply);
+  }
+
+  /// Evaluates many flags in a single platform call.
+  /// All values are read from the same snapshot of the current user's flags,
+  /// so they are consistent with each other. Like [allFlags], no events are sent to LaunchDarkly.
+  /// The returned list holds one value per entry in [requests], in the same order.
+  /// Each value is the entry's fallback when the flag is missing or not of the requested type.
+  Future<List<dynamic>> variationBatch(
+      List<LaunchDarklyVariationRequest> requests,
+      {String? environment}) async {
+    if (requests.isEmpty) {
+      return [];
+    }
+
+    List<dynamic> values = List<dynamic>.from(await _channel.invokeMethod(
+        'variationBatch', <String, dynamic>{
+      'requests': requests.map((request) => request.toMap()).toList(),
+      if (environment != null) 'environment': environment,
+    }));
+    return values;
   }
 
   /// Registers a callback to be called when the flagKey changes
@@ -189,13 +568,27 @@ class LaunchdarklyFlutter {
   ///
   /// [flagKey]  the flag key to attach the listener to
   /// [callback] the listener to attach to the flag key
+  /// [listenerId] (optional) identifies the listener among others of the same flag key.
+  /// Without it, the flag key has a single listener, which is replaced by the next registration.
+  /// Listeners with different ids are all called, and each is unregistered on its own.
   Future<bool?> registerFeatureFlagListener(
-      String? flagKey, void Function(String?)? callback) async {
+      String? flagKey, void Function(String?)? callback,
+      {String? listenerId}) async {
     if (flagKey == null || callback == null) {
       return false;
     }
 
-    if (flagListeners!.containsKey(flagKey)) {
+    if (listenerId != null) {
+      _flagListenersById.putIfAbsent(flagKey, () => {})[listenerId] = callback;
+      return await _channel.invokeMethod(
+          'registerFeatureFlagListener', <String, dynamic>{
+        'flagKey': flagKey,
+        'listenerId': _flagListenerId(listenerId),
+      });
+    }
+
+    if (flagListeners!.containsKey(flagKey) ||
+        flagChangeListeners!.containsKey(flagKey)) {
       flagListeners![flagKey] = callback;
       return true;
     }
@@ -205,31 +598,350 @@ class LaunchdarklyFlutter {
         'registerFeatureFlagListener', <String, dynamic>{'flagKey': flagKey});
   }
 
-  /// Unregisters the existing callback for the flagKey.
+  /// Registers a callback to be called with the new and old values when the flagKey changes.
+  /// This saves the variation call a [registerFeatureFlagListener] callback would need to read the new value.
+  ///
+  /// [flagKey]  the flag key to attach the listener to
+  /// [callback] the listener to attach to the flag key
+  /// [listenerId] (optional) identifies the listener among others of the same flag key,
+  /// as for [registerFeatureFlagListener].
+  Future<bool?> registerFlagChangeListener(
+      String? flagKey, void Function(LaunchDarklyFlagChange)? callback,
+      {String? listenerId}) async {
+    if (flagKey == null || callback == null) {
+      return false;
+    }
+
+    if (listenerId != null) {
+      _flagChangeListenersById.putIfAbsent(flagKey, () => {})[listenerId] =
+          callback;
+      return await _channel.invokeMethod(
+          'registerFeatureFlagListener', <String, dynamic>{
+        'flagKey': flagKey,
+        'listenerId': _flagChangeListenerId(listenerId),
+      });
+    }
+
+    if (flagListeners!.containsKey(flagKey) ||
+        flagChangeListeners!.containsKey(flagKey)) {
+      flagChangeListeners![flagKey] = callback;
+      return true;
+    }
+
+    flagChangeListeners![flagKey] = callback;
+    return await _channel.invokeMethod(
+        'registerFeatureFlagListener', <String, dynamic>{'flagKey': flagKey});
+  }
+
+  /// Unregisters the existing flag change callback for the flagKey, or only the one
+  /// registered with [listenerId].
+  ///
+  /// [flagKey] the flag key to remove the listener from
+  Future<bool?> unregisterFlagChangeListener(String? flagKey,
+      {String? listenerId}) async {
+    if (flagKey == null) {
+      return false;
+    }
+
+    if (listenerId != null) {
+      if (!_removeListener(_flagChangeListenersById, flagKey, listenerId)) {
+        return false;
+      }
+      return await _channel.invokeMethod(
+          'unregisterFeatureFlagListener', <String, dynamic>{
+        'flagKey': flagKey,
+        'listenerId': _flagChangeListenerId(listenerId),
+      });
+    }
+
+    if (!flagChangeListeners!.containsKey(flagKey)) {
+      return false;
+    }
+
+    flagChangeListeners!.remove(flagKey);
+    if (flagListeners!.containsKey(flagKey)) {
+      return true;
+    }
+    return await _channel.invokeMethod(
+        'unregisterFeatureFlagListener', <String, dynamic>{'flagKey': flagKey});
+  }
+
+  /// Unregisters the existing callback for the flagKey, or only the one registered with [listenerId].
   ///
   /// [flagKey] the flag key to remove the listener from
-  Future<bool?> unregisterFeatureFlagListener(String? flagKey) async {
+  Future<bool?> unregisterFeatureFlagListener(String? flagKey,
+      {String? listenerId}) async {
     if (flagKey == null) {
       return false;
     }
 
+    if (listenerId != null) {
+      if (!_removeListener(_flagListenersById, flagKey, listenerId)) {
+        return false;
+      }
+      return await _channel.invokeMethod(
+          'unregisterFeatureFlagListener', <String, dynamic>{
+        'flagKey': flagKey,
+        'listenerId': _flagListenerId(listenerId),
+      });
+    }
+
     if (!flagListeners!.containsKey(flagKey) ||
         flagListeners![flagKey] == null) {
       return false;
     }
 
     flagListeners!.remove(flagKey);
+    if (flagChangeListeners!.containsKey(flagKey)) {
+      return true;
+    }
     return await _channel.invokeMethod(
         'unregisterFeatureFlagListener', <String, dynamic>{'flagKey': flagKey});
   }
 
+  // Native subscriber ids, kept apart from the flag key used by listeners without an id.
+  static String _flagListenerId(String listenerId) => 'listener:$listenerId';
+
+  static String _flagChangeListenerId(String listenerId) =>
+      'change:$listenerId';
+
+  static bool _removeListener<T>(Map<String, Map<String, T>> listeners,
+      String flagKey, String listenerId) {
+    final Map<String, T>? byId = listeners[flagKey];
+    if (byId == null || byId.remove(listenerId) == null) {
+      return false;
+    }
+    if (byId.isEmpty) {
+      listeners.remove(flagKey);
+    }
+    return true;
+  }
+
   /// Returns a map of all feature flags for the current user. No events are sent to LaunchDarkly.
-  Future<Map<String, dynamic>> allFlags() async {
-    Map<String, dynamic> allFlags =
-        Map<String, dynamic>.from(await _channel.invokeMethod('allFlags'));
+  /// JSON flags are returned as `List` or `Map` values.
+  /// Binary flag payloads only cover the primary environment, so other environments use the method channel.
+  Future<Map<String, dynamic>> allFlags({String? environment}) async {
+    if (binaryFlagPayloads && environment == null) {
+      return (await _requestFlagPayload(_FlagPayloadCodec.opAllFlags))['flags'];
+    }
+
+    Map<String, dynamic> allFlags = Map<String, dynamic>.from(
+        await _channel.invokeMethod('allFlags', <String, dynamic>{
+      if (environment != null) 'environment': environment,
+    }));
     return allFlags;
   }
 
+  /// Returns the [LaunchDarklyFlagStore] of this client, seeded with the current user's flags
+  /// and kept up to date with every flag change from then on. (Android only)
+  /// Calling this again returns the same store.
+  Future<LaunchDarklyFlagStore> openFlagStore() async {
+    if (_flagStore != null) {
+      return _flagStore!;
+    }
+    final LaunchDarklyFlagStore store = LaunchDarklyFlagStore._(this);
+    _flagStore = store;
+    // Subscribed before seeding, so no change made after the snapshot is missed.
+    await _channel.invokeMethod('registerAllFlagsListener',
+        <String, dynamic>{'listenerId': _flagStoreListenerId});
+    await store.refresh();
+    return store;
+  }
+
+  /// Stops updating the store returned by [openFlagStore].
+  Future<void> closeFlagStore() async {
+    if (_flagStore == null) {
+      return;
+    }
+    _flagStore = null;
+    await _channel.invokeMethod('unregisterAllFlagsListener',
+        <String, dynamic>{'listenerId': _flagStoreListenerId});
+  }
+
+  /// Returns a stream of every flag change observed by the native client. (Android only)
+  ///
+  /// The native side sends one batch at a time and waits until it was received before sending
+  /// the next. Changes observed meanwhile wait in a buffer of [bufferSize] changes, and [overflow]
+  /// decides what is dropped when it is full, so a busy isolate never makes native memory grow
+  /// without limit. [LaunchDarklyFlagChangeBatch.dropped] tells when changes were dropped.
+  /// Only one such stream can be listened to at a time. The returned stream is a broadcast
+  /// stream: every listener gets each batch, which is received and decoded only once.
+  Stream<LaunchDarklyFlagChangeBatch> flagChanges({
+    int bufferSize = 256,
+    LaunchDarklyFlagChangeOverflow overflow =
+        LaunchDarklyFlagChangeOverflow.latestPerKey,
+  }) {
+    final Stream<dynamic> events =
+        _flagChangesChannel.receiveBroadcastStream(<String, dynamic>{
+      'bufferSize': bufferSize,
+      'overflow': overflow == LaunchDarklyFlagChangeOverflow.dropOldest
+          ? 'dropOldest'
+          : 'latestPerKey',
+      'binary': binaryFlagPayloads,
+    });
+    final StreamController<LaunchDarklyFlagChangeBatch> batches =
+        StreamController<LaunchDarklyFlagChangeBatch>.broadcast();
+    StreamSubscription<dynamic>? subscription;
+    batches.onListen = () {
+      // The native side interns keys anew for each listen, and so does this decoder.
+      final _FlagPayloadCodec codec = _FlagPayloadCodec();
+      subscription = events.listen((event) {
+        // Lets the native side send the next batch, once whatever the number of listeners.
+        _channel.invokeMethod('flagChangesDelivered');
+        batches.add(_decodeFlagChangeBatch(codec, event));
+      }, onError: batches.addError, onDone: batches.close);
+    };
+    batches.onCancel = () {
+      subscription?.cancel();
+      subscription = null;
+    };
+    return batches.stream;
+  }
+
+  static LaunchDarklyFlagChangeBatch _decodeFlagChangeBatch(
+      _FlagPayloadCodec codec, Map<dynamic, dynamic> event) {
+    final Uint8List? payload = event['payload'];
+    if (payload == null) {
+      return _flagChangeBatchFromMap(event);
+    }
+    final Map<String, dynamic> decoded = codec.decodeChanges(payload.buffer
+        .asByteData(payload.offsetInBytes, payload.lengthInBytes));
+    return LaunchDarklyFlagChangeBatch(
+        decoded['changes'], decoded['version'], event['dropped']);
+  }
+
+  /// Tracks a custom event. (Android only)
+  /// Events tracked in the same microtask are sent together in one [trackMany] call
+  /// per environment, so tracking many events in a row costs a single platform call.
+  /// The returned future completes once the batch has been sent. It does not fail:
+  /// a batch the native side rejects is reported to [FlutterError.onError].
+  Future<void> track(String eventName, {String? environment}) =>
+      _enqueueEvent(LaunchDarklyEvent(eventName), environment);
+
+  /// Tracks a custom event with JSON [data], batched like [track]. (Android only)
+  Future<void> trackData(String eventName, dynamic data,
+          {String? environment}) =>
+      _enqueueEvent(LaunchDarklyEvent(eventName, data: data), environment);
+
+  /// Tracks a custom event with a numeric [metricValue] and optional JSON [data],
+  /// batched like [track]. (Android only)
+  Future<void> trackMetric(String eventName, num metricValue,
+          {dynamic data, String? environment}) =>
+      _enqueueEvent(
+          LaunchDarklyEvent(eventName, data: data, metricValue: metricValue),
+          environment);
+
+  Future<void> _enqueueEvent(LaunchDarklyEvent event, String? environment) {
+    if (_pendingEvents == null) {
+      final Map<String?, List<LaunchDarklyEvent>> events = {};
+      _pendingEvents = events;
+      _pendingEventsSent = Future<void>.microtask(() {
+        _pendingEvents = null;
+        return Future.wait(events.entries.map((batch) =>
+            trackMany(batch.value, environment: batch.key)
+                .catchError(_reportEventBatchError)));
+      });
+    }
+    _pendingEvents!.putIfAbsent(environment, () => []).add(event);
+    return _pendingEventsSent;
+  }
+
+  // Each failed batch is reported once, rather than failing every track and flush waiting on it.
+  static void _reportEventBatchError(Object error, StackTrace stack) {
+    FlutterError.reportError(FlutterErrorDetails(
+      exception: error,
+      stack: stack,
+      library: 'launchdarkly_flutter',
+      context: ErrorDescription('while sending tracked events'),
+    ));
+  }
+
+  /// Tracks many custom events in a single platform call. (Android only)
+  /// The events are handed to the SDK on a background thread, in order, and sent to LaunchDarkly
+  /// with the SDK's next batch of analytics events.
+  Future<void> trackMany(List<LaunchDarklyEvent> events,
+      {String? environment}) async {
+    if (events.isEmpty) {
+      return;
+    }
+
+    await _channel.invokeMethod('trackMany', <String, dynamic>{
+      'events': events.map((event) => event.toMap()).toList(),
+      if (environment != null) 'environment': environment,
+    });
+  }
+
+  /// Sends the tracked events to LaunchDarkly now rather than at the next flush interval,
+  /// for the given [environment] or for all of them. (Android only)
+  Future<void> flush({String? environment}) async {
+    // Events still waiting to be batched go first.
+    await _pendingEventsSent;
+    await _channel.invokeMethod('flush', <String, dynamic>{
+      if (environment != null) 'environment': environment,
+    });
+  }
+
+  /// Reconnects the client after [setOffline]. (Android only)
+  Future<bool?> setOnline() async {
+    return await _channel.invokeMethod('setOnline');
+  }
+
+  /// Closes the client's connection to LaunchDarkly; flags are served from the cache
+  /// until [setOnline] is called. (Android only)
+  Future<bool?> setOffline() async {
+    return await _channel.invokeMethod('setOffline');
+  }
+
+  /// Returns whether the client was taken offline by [setOffline]. (Android only)
+  /// The pause in the background (see [setPauseInBackground]) does not count.
+  Future<bool?> isOffline() async {
+    return await _channel.invokeMethod('isOffline');
+  }
+
+  /// Switches between streaming and polling flag updates. (Android only)
+  /// The client only reads its connection mode when it starts, so an initialized client is
+  /// restarted with the same config and user; flags keep their last values meanwhile.
+  /// The mode lasts until the next init, which uses [LaunchDarklyConfig.stream] again.
+  Future<bool?> setConnectionMode(LaunchDarklyConnectionMode mode) async {
+    return await _channel.invokeMethod('setConnectionMode', <String, dynamic>{
+      'mode':
+          mode == LaunchDarklyConnectionMode.polling ? 'polling' : 'streaming',
+    });
+  }
+
+  /// When [pause] is true, the client goes offline while the app is in the background,
+  /// and flag change listeners are not called. On resume the client reconnects, and once it has
+  /// fetched its flags (or after 5 seconds), listeners get one call with every flag that changed
+  /// meanwhile. It is off by default. (Android only)
+  Future<bool?> setPauseInBackground(bool pause) async {
+    return await _channel.invokeMethod(
+        'setPauseInBackground', <String, dynamic>{'pause': pause});
+  }
+
+  /// Turns the plugin's instrumentation on or off. It is off by default. (Android only)
+  /// While it is on, the plugin records the metrics returned by [getMetrics].
+  Future<bool?> setMetricsEnabled(bool enabled) async {
+    return await _channel.invokeMethod(
+        'setMetricsEnabled', <String, dynamic>{'enabled': enabled});
+  }
+
+  /// Returns the metrics recorded since instrumentation was enabled or last reset,
+  /// and resets them when [reset] is true. (Android only)
+  ///
+  /// The map holds `enabled`, `droppedCallbacks` (flag change callbacks that could not be sent),
+  /// `failedEvents` and `failedFlushes` (custom events and flushes the SDK failed on),
+  /// and `methods`, which maps each method name to its call `count`, `errors` and `latencyNanos`.
+  /// It also holds `convertedFlagCounts` (flags per `allFlags`/`syncFlags` reply) and
+  /// `flagPayloadBytes` (size of those replies), both for the method channel and the binary one,
+  /// `flagChangePayloadBytes` (size of binary flag change notifications) and `callbackLagNanos`
+  /// (from a flag change being observed to its callback being sent). Each of these histograms has a `count`, `sum` and `max`,
+  /// and `buckets`, where bucket `i` counts the values from `2^i` up to, but excluding, `2^(i+1)`.
+  Future<Map<String, dynamic>> getMetrics({bool reset = false}) async {
+    final Map<dynamic, dynamic>? metrics = await _channel
+        .invokeMethod('getMetrics', <String, dynamic>{'reset': reset});
+    return Map<String, dynamic>.from(metrics ?? {});
+  }
+
   /// Registers a callback to be called when a flag update is processed by the
   /// SDK.
   ///
@@ -241,7 +953,8 @@ class LaunchdarklyFlutter {
       return false;
     }
 
-    if (allFlagsListeners!.containsKey(listenerId)) {
+    if (allFlagsListeners!.containsKey(listenerId) ||
+        allFlagChangesListeners!.containsKey(listenerId)) {
       allFlagsListeners![listenerId] = callback;
       return true;
     }
@@ -251,6 +964,48 @@ class LaunchdarklyFlutter {
         <String, dynamic>{'listenerId': listenerId});
   }
 
+  /// Registers a callback to be called with the new and old values of the changed flags
+  /// when a flag update is processed by the SDK.
+  ///
+  /// [listenerId]  the id to attach the listener to
+  /// [callback] the listener to attach to the listenerId
+  Future<bool?> registerAllFlagChangesListener(String? listenerId,
+      void Function(List<LaunchDarklyFlagChange>)? callback) async {
+    if (listenerId == null || callback == null) {
+      return false;
+    }
+
+    if (allFlagsListeners!.containsKey(listenerId) ||
+        allFlagChangesListeners!.containsKey(listenerId)) {
+      allFlagChangesListeners![listenerId] = callback;
+      return true;
+    }
+
+    allFlagChangesListeners![listenerId] = callback;
+    return await _channel.invokeMethod('registerAllFlagsListener',
+        <String, dynamic>{'listenerId': listenerId});
+  }
+
+  /// Unregisters a flag changes callback so it will no longer be called on flag updates.
+  ///
+  /// [listenerId] the id to remove the listener from
+  Future<bool?> unregisterAllFlagChangesListener(String? listenerId) async {
+    if (listenerId == null) {
+      return false;
+    }
+
+    if (!allFlagChangesListeners!.containsKey(listenerId)) {
+      return false;
+    }
+
+    allFlagChangesListeners!.remove(listenerId);
+    if (allFlagsListeners!.containsKey(listenerId)) {
+      return true;
+    }
+    return await _channel.invokeMethod('unregisterAllFlagsListener',
+        <String, dynamic>{'listenerId': listenerId});
+  }
+
   /// Unregisters a callback so it will no longer be called on flag updates.
   ///
   /// [listenerId] the id to remove the listener from
@@ -265,6 +1020,9 @@ class LaunchdarklyFlutter {
     }
 
     allFlagsListeners!.remove(listenerId);
+    if (allFlagChangesListeners!.containsKey(listenerId)) {
+      return true;
+    }
     return await _channel.invokeMethod('unregisterAllFlagsListener',
         <String, dynamic>{'listenerId': listenerId});
   }
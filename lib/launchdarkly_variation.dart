@@ -0,0 +1,36 @@
+/// The type a flag is evaluated as in a [LaunchDarklyVariationRequest].
+enum LaunchDarklyFlagType {
+  /// Evaluates the flag as a `bool`.
+  boolean,
+
+  /// Evaluates the flag as a `String`.
+  string,
+
+  /// Evaluates the flag as an `int`.
+  integer,
+
+  /// Evaluates the flag as a `double`.
+  double,
+
+  /// Evaluates the flag as any JSON value (`null`, `bool`, `num`, `String`, `List` or `Map`).
+  json,
+}
+
+/// A single flag evaluation within a batch, see [LaunchdarklyFlutter.variationBatch].
+class LaunchDarklyVariationRequest {
+  /// Key for the flag to evaluate.
+  final String flagKey;
+
+  /// The type the flag is expected to have.
+  final LaunchDarklyFlagType type;
+
+  /// Fallback value in case the flag is missing or not of the expected [type].
+  final dynamic fallback;
+
+  /// Constructor for creating a flag evaluation request.
+  const LaunchDarklyVariationRequest(
+    this.flagKey,
+    this.type, {
+    this.fallback,
+  });
+}
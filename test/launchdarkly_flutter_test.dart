@@ -1,11 +1,16 @@
 import 'dart:convert';
+import 'dart:typed_data';
 
 import 'package:flutter/foundation.dart';
 import 'package:flutter/services.dart';
 import 'package:flutter_test/flutter_test.dart';
 import 'package:launchdarkly_flutter/launchdarkly_config.dart';
+import 'package:launchdarkly_flutter/launchdarkly_evaluation_detail.dart';
+import 'package:launchdarkly_flutter/launchdarkly_event.dart';
+import 'package:launchdarkly_flutter/launchdarkly_flag_change.dart';
 import 'package:launchdarkly_flutter/launchdarkly_flutter.dart';
 import 'package:launchdarkly_flutter/launchdarkly_user.dart';
+import 'package:launchdarkly_flutter/launchdarkly_variation.dart';
 
 void main() {
   TestWidgetsFlutterBinding.ensureInitialized();
@@ -16,10 +21,22 @@ void main() {
 
   final Map<String, void Function(List<String>)>? allFlagsListeners = {};
 
+  final Map<String, void Function(LaunchDarklyFlagChange)>?
+      flagChangeListeners = {};
+
+  final Map<String, void Function(List<LaunchDarklyFlagChange>)>?
+      allFlagChangesListeners = {};
+
   final LaunchdarklyFlutter launchdarklyFlutter = LaunchdarklyFlutter(
-      flagListeners: flagListeners, allFlagsListeners: allFlagsListeners);
+      flagListeners: flagListeners,
+      allFlagsListeners: allFlagsListeners,
+      flagChangeListeners: flagChangeListeners,
+      allFlagChangesListeners: allFlagChangesListeners);
+
+  int flagChangesDelivered = 0;
 
   setUp(() {
+    flagChangesDelivered = 0;
     channel.setMockMethodCallHandler((MethodCall methodCall) async {
       if (methodCall.method == 'init') {
         Map<dynamic, dynamic> args = methodCall.arguments;
@@ -32,8 +49,16 @@ void main() {
         }
       }
 
+      if (methodCall.method == 'initAsync') {
+        Map<dynamic, dynamic> args = methodCall.arguments;
+        return args['timeoutMillis'] == 0 ? 'timeout' : 'network';
+      }
+
       if (methodCall.method == 'identify') {
-        return true;
+        Map<dynamic, dynamic> args = methodCall.arguments;
+        // Like the native side: a zero timeout expires before the flags load,
+        // no timeout waits for them.
+        return args['timeoutMillis'] != 0;
       }
 
       if (methodCall.method == 'boolVariation') {
@@ -50,6 +75,21 @@ void main() {
         return args['fallback'];
       }
 
+      if (methodCall.method == 'intVariation') {
+        return 42;
+      }
+
+      if (methodCall.method == 'doubleVariation') {
+        Map<dynamic, dynamic> args = methodCall.arguments;
+        return args['fallback'];
+      }
+
+      if (methodCall.method == 'jsonVariation') {
+        return {
+          'list': [1, 2.5, 'three']
+        };
+      }
+
       if (methodCall.method == 'registerFeatureFlagListener') {
         return true;
       }
@@ -63,6 +103,89 @@ void main() {
         return response;
       }
 
+      if (methodCall.method == 'allFlagsSince') {
+        Map<dynamic, dynamic> args = methodCall.arguments;
+        if (args['version'] == null) {
+          return {
+            'version': 1,
+            'full': true,
+            'flags': {'flagKey': true, 'otherFlagKey': 'value'},
+            'removed': [],
+          };
+        }
+        return {
+          'version': 2,
+          'full': false,
+          'flags': {'flagKey': false},
+          'removed': ['otherFlagKey'],
+        };
+      }
+
+      if (methodCall.method == 'variationBatch') {
+        Map<dynamic, dynamic> args = methodCall.arguments;
+        return args['requests']
+            .map((request) => request['flagKey'] == 'flagKey'
+                ? true
+                : request['fallback'])
+            .toList();
+      }
+
+      if (methodCall.method == 'boolVariationDetail') {
+        return {
+          'value': true,
+          'variationIndex': 1,
+          'reason': {'kind': 'RULE_MATCH', 'ruleIndex': 0, 'ruleId': 'ruleId'},
+        };
+      }
+
+      if (methodCall.method == 'variationDetailBatch') {
+        Map<dynamic, dynamic> args = methodCall.arguments;
+        return args['requests']
+            .map((request) => {
+                  'value': request['fallback'],
+                  'reason': {'kind': 'ERROR', 'errorKind': 'FLAG_NOT_FOUND'},
+                })
+            .toList();
+      }
+
+      if (methodCall.method == 'getMetrics') {
+        return {
+          'enabled': true,
+          'droppedCallbacks': 0,
+          'failedEvents': 0,
+          'failedFlushes': 0,
+          'methods': {
+            'allFlags': {
+              'count': 1,
+              'errors': 0,
+              'latencyNanos': {
+                'count': 1,
+                'sum': 1500,
+                'max': 1500,
+                'buckets': [0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1],
+              },
+            },
+          },
+        };
+      }
+
+      if (methodCall.method == 'flagsVersion') {
+        return 3;
+      }
+
+      if (methodCall.method == 'flagChangesDelivered') {
+        flagChangesDelivered++;
+        return true;
+      }
+
+      if (methodCall.method == 'setBinaryFlagChanges') {
+        return true;
+      }
+
+      if (methodCall.method == 'setConnectionMode') {
+        return methodCall.arguments['mode'] == 'polling';
+      }
+
       if (methodCall.method == 'registerAllFlagsListener') {
         return true;
       }
@@ -78,6 +201,8 @@ void main() {
   tearDown(() {
     flagListeners!.clear();
     allFlagsListeners!.clear();
+    flagChangeListeners!.clear();
+    allFlagChangesListeners!.clear();
     channel.setMockMethodCallHandler(null);
   });
 
@@ -93,6 +218,18 @@ void main() {
     expect(await launchdarklyFlutter.init('MOBILE_KEY', 'USER_ID'), true);
   });
 
+  test('initWithStatus', () async {
+    expect(await launchdarklyFlutter.initWithStatus('MOBILE_KEY', 'USER_ID'),
+        LaunchDarklyInitStatus.network);
+  });
+
+  test('initWithStatus timing out', () async {
+    expect(
+        await launchdarklyFlutter.initWithStatus('MOBILE_KEY', 'USER_ID',
+            timeout: Duration.zero),
+        LaunchDarklyInitStatus.timeout);
+  });
+
   test('init with config', () async {
     final configExpected = LaunchDarklyConfig(
       allAttributesPrivate: true,
@@ -119,6 +256,38 @@ void main() {
     expect(result, true);
   });
 
+  test('init with networking and event settings', () async {
+    const configExpected = LaunchDarklyConfig(
+      eventsFlushInterval: Duration(seconds: 30),
+      pollingInterval: Duration(minutes: 10),
+      backgroundPollingInterval: Duration(hours: 1),
+      connectionTimeout: Duration(seconds: 5),
+      stream: false,
+      diagnosticOptOut: true,
+      evaluationReasons: true,
+    );
+    Map<String, dynamic>? configActual;
+    channel.setMockMethodCallHandler((MethodCall methodCall) async {
+      Map<dynamic, dynamic> args = methodCall.arguments;
+      configActual = args['config'].cast<String, dynamic>();
+      return true;
+    });
+    final result = await launchdarklyFlutter.init(
+      'MOBILE_KEY',
+      'USER_ID',
+      config: configExpected,
+    );
+    expect(result, true);
+    expect(configActual!['eventsFlushIntervalMillis'], 30000);
+    expect(configActual!['eventsCapacity'], null);
+    expect(configActual!['pollingIntervalMillis'], 600000);
+    expect(configActual!['backgroundPollingIntervalMillis'], 3600000);
+    expect(configActual!['connectionTimeoutMillis'], 5000);
+    expect(configActual!['stream'], false);
+    expect(configActual!['diagnosticOptOut'], true);
+    expect(configActual!['evaluationReasons'], true);
+  });
+
   test('init with all arguments', () async {
     const userExpected = {
       "secondary": 'testSecondaryKey',
@@ -343,6 +512,20 @@ void main() {
     expect(await launchdarklyFlutter.identify(null), true);
   });
 
+  test('identify without timeout', () async {
+    expect(await launchdarklyFlutter.identify('userKey'), true);
+  });
+
+  test('identify with timeout', () async {
+    expect(
+        await launchdarklyFlutter.identify('userKey',
+            timeout: const Duration(seconds: 2)),
+        true);
+    expect(
+        await launchdarklyFlutter.identify('userKey', timeout: Duration.zero),
+        false);
+  });
+
   test('identify with all arguments', () async {
     const userExpected = {
       "secondary": 'testSecondaryKey',
@@ -481,6 +664,20 @@ void main() {
         'nothing');
   });
 
+  test('intVariation', () async {
+    expect(await launchdarklyFlutter.intVariation('limit', 0), 42);
+  });
+
+  test('doubleVariation with fallback', () async {
+    expect(await launchdarklyFlutter.doubleVariation('ratio', 0.5), 0.5);
+  });
+
+  test('jsonVariation', () async {
+    expect(await launchdarklyFlutter.jsonVariation('config', null), {
+      'list': [1, 2.5, 'three']
+    });
+  });
+
   test('registerFeatureFlagListener with flagKey and callback null', () async {
     String flagKey = 'flagKey';
     await launchdarklyFlutter.registerFeatureFlagListener(null, null);
@@ -648,6 +845,69 @@ void main() {
     expect(response['flagKey'], true);
   });
 
+  test('syncFlags', () async {
+    final snapshot = LaunchDarklyFlagsSnapshot();
+
+    expect(await launchdarklyFlutter.syncFlags(snapshot),
+        {'flagKey', 'otherFlagKey'});
+    expect(snapshot.version, 1);
+    expect(snapshot.flags, {'flagKey': true, 'otherFlagKey': 'value'});
+
+    expect(await launchdarklyFlutter.syncFlags(snapshot),
+        {'flagKey', 'otherFlagKey'});
+    expect(snapshot.version, 2);
+    expect(snapshot.flags, {'flagKey': false});
+  });
+
+  test('allFlags and syncFlags with binaryFlagPayloads', () async {
+    const BasicMessageChannel<ByteData> flagsChannel =
+        BasicMessageChannel<ByteData>(
+            'launchdarkly_flutter/flags', BinaryCodec());
+    final List<List<int>> requests = [];
+    final List<List<int>> replies = [
+      // version 3, full, keys 'a' and 'b', a = true, b = 'hi'
+      [1, 3, 1, 0, 2, 1, 97, 1, 98, 2, 0, 2, 1, 5, 2, 104, 105],
+      // version 4, delta, no new keys, a = -2, b removed
+      [1, 4, 0, 2, 0, 2, 0, 3, 3, 1, 8],
+    ];
+    flagsChannel.setMockMessageHandler((ByteData? message) async {
+      requests.add(message!.buffer.asUint8List(
+          message.offsetInBytes, message.lengthInBytes));
+      return Uint8List.fromList(replies.removeAt(0)).buffer.asByteData();
+    });
+
+    final binaryClient = LaunchdarklyFlutter(binaryFlagPayloads: true);
+    final snapshot = LaunchDarklyFlagsSnapshot();
+
+    expect(await binaryClient.syncFlags(snapshot), {'a', 'b'});
+    expect(snapshot.flags, {'a': true, 'b': 'hi'});
+    expect(await binaryClient.syncFlags(snapshot), {'a', 'b'});
+    expect(snapshot.version, 4);
+    expect(snapshot.flags, {'a': -2});
+    // The second request tells that two keys are known and diffs against version 3.
+    expect(requests, [
+      [1, 0],
+      [2, 2, 3],
+    ]);
+
+    flagsChannel.setMockMessageHandler(null);
+  });
+
+  test('variationBatch', () async {
+    List<dynamic> values = await launchdarklyFlutter.variationBatch([
+      LaunchDarklyVariationRequest('flagKey', LaunchDarklyFlagType.boolean,
+          fallback: false),
+      LaunchDarklyVariationRequest('missing', LaunchDarklyFlagType.string,
+          fallback: 'fallback'),
+    ]);
+
+    expect(values, [true, 'fallback']);
+  });
+
+  test('variationBatch with no requests', () async {
+    expect(await launchdarklyFlutter.variationBatch([]), []);
+  });
+
   test('registerAllFlagsListener with callback null', () async {
     String listenerId = 'listenerId';
     await launchdarklyFlutter.registerAllFlagsListener(listenerId, null);
@@ -755,4 +1015,368 @@ void main() {
     expect(await channel.invokeMethod('callbackAllFlagsListener', arguments),
         true);
   });
+
+  test(
+      'callbackFlagsChanged calls flag and all flags listeners with new values',
+      () async {
+    String flagKey = 'flagKey';
+    String listenerId = 'listenerId';
+    List<dynamic> flagValues = [];
+    List<List<String>> allFlagsCalls = [];
+
+    await launchdarklyFlutter.registerFeatureFlagListener(flagKey, (flagKey) {
+      flagValues.add(launchdarklyFlutter.latestFlagValues[flagKey]);
+    });
+    await launchdarklyFlutter.registerAllFlagsListener(listenerId, (flagKeys) {
+      allFlagsCalls.add(flagKeys);
+    });
+
+    expect(
+        await channel.invokeMethod('callbackFlagsChanged', {
+          'changes': [
+            {
+              'flagKey': flagKey,
+              'type': 'string',
+              'value': 'newValue',
+              'oldValue': 'oldValue'
+            },
+            {
+              'flagKey': 'removedFlagKey',
+              'type': null,
+              'value': null,
+              'oldValue': true
+            },
+          ],
+        }),
+        true);
+
+    expect(flagValues, ['newValue']);
+    expect(allFlagsCalls, [
+      [flagKey, 'removedFlagKey']
+    ]);
+    expect(launchdarklyFlutter.latestFlagValues, {flagKey: 'newValue'});
+  });
+
+  test(
+      'callbackFlagsChanged calls flag change listeners with old and new values',
+      () async {
+    String flagKey = 'flagKey';
+    List<LaunchDarklyFlagChange> flagChanges = [];
+    List<List<LaunchDarklyFlagChange>> allFlagChanges = [];
+
+    await launchdarklyFlutter.registerFlagChangeListener(
+        flagKey, (change) => flagChanges.add(change));
+    await launchdarklyFlutter.registerAllFlagChangesListener(
+        'listenerId', (changes) => allFlagChanges.add(changes));
+
+    await channel.invokeMethod('callbackFlagsChanged', {
+      'changes': [
+        {'flagKey': flagKey, 'type': 'number', 'value': 2, 'oldValue': 1},
+        {'flagKey': 'otherFlagKey', 'type': null, 'oldValue': true},
+      ],
+    });
+
+    expect(flagChanges.length, 1);
+    expect(flagChanges.single.type, 'number');
+    expect(flagChanges.single.value, 2);
+    expect(flagChanges.single.oldValue, 1);
+    expect(allFlagChanges.single.map((change) => change.flagKey),
+        [flagKey, 'otherFlagKey']);
+    expect(allFlagChanges.single.last.deleted, true);
+  });
+
+  test('unregisterFlagChangeListener keeps flag listener registered', () async {
+    String flagKey = 'flagKey';
+    await launchdarklyFlutter.registerFeatureFlagListener(flagKey, (_) {});
+    await launchdarklyFlutter.registerFlagChangeListener(flagKey, (_) {});
+
+    expect(await launchdarklyFlutter.unregisterFlagChangeListener(flagKey),
+        true);
+    expect(flagChangeListeners![flagKey], null);
+    expect(flagListeners![flagKey], isNotNull);
+  });
+
+  test('callbackFlagsChanged without changes argument', () async {
+    expect(await channel.invokeMethod('callbackFlagsChanged', {}), false);
+  });
+
+  test('flag store is seeded once and updated by pushed changes', () async {
+    final LaunchDarklyFlagStore store =
+        await launchdarklyFlutter.openFlagStore();
+    int notifications = 0;
+    store.addListener(() => notifications++);
+
+    expect(store.version, 1);
+    expect(store.boolVariation('flagKey', false), true);
+    expect(store.stringVariation('otherFlagKey', null), 'value');
+    expect(store.intVariation('missingFlagKey', 3), 3);
+    expect(await store.isStale(), true);
+
+    // Changes the seeded snapshot already reflects are ignored.
+    await channel.invokeMethod('callbackFlagsChanged', {
+      'version': 1,
+      'changes': [
+        {'flagKey': 'flagKey', 'type': 'boolean', 'value': false},
+      ],
+    });
+    expect(store.boolVariation('flagKey', false), true);
+
+    await channel.invokeMethod('callbackFlagsChanged', {
+      'version': 3,
+      'changes': [
+        {'flagKey': 'flagKey', 'type': 'boolean', 'value': false},
+        {'flagKey': 'otherFlagKey', 'type': null, 'oldValue': 'value'},
+      ],
+    });
+    expect(store.boolVariation('flagKey', true), false);
+    expect(store.flags.containsKey('otherFlagKey'), false);
+    expect(store.version, 3);
+    expect(notifications, 1);
+    expect(await store.isStale(), false);
+    expect(await launchdarklyFlutter.openFlagStore(), same(store));
+
+    await launchdarklyFlutter.closeFlagStore();
+  });
+
+  test('boolVariationDetail', () async {
+    final LaunchDarklyEvaluationDetail<bool> detail =
+        await launchdarklyFlutter.boolVariationDetail('flagKey', false);
+
+    expect(detail.value, true);
+    expect(detail.variationIndex, 1);
+    expect(detail.isFallback, false);
+    expect(detail.reason!.toMap(),
+        {'kind': 'RULE_MATCH', 'ruleIndex': 0, 'ruleId': 'ruleId'});
+  });
+
+  test('variationDetailBatch', () async {
+    final List<LaunchDarklyEvaluationDetail<dynamic>> details =
+        await launchdarklyFlutter.variationDetailBatch([
+      LaunchDarklyVariationRequest('missing', LaunchDarklyFlagType.integer,
+          fallback: 3),
+    ]);
+
+    expect(details.single.value, 3);
+    expect(details.single.isFallback, true);
+    expect(details.single.reason!.kind, 'ERROR');
+    expect(details.single.reason!.errorKind, 'FLAG_NOT_FOUND');
+  });
+
+  test('getMetrics', () async {
+    final Map<String, dynamic> metrics =
+        await launchdarklyFlutter.getMetrics(reset: true);
+
+    expect(metrics['enabled'], true);
+    expect(metrics['methods']['allFlags']['latencyNanos']['max'], 1500);
+  });
+
+  test('flagChanges', () async {
+    const String flagChangesChannel = 'launchdarkly_flutter/flagChanges';
+    const MethodCodec codec = StandardMethodCodec();
+    final TestDefaultBinaryMessenger messenger =
+        TestDefaultBinaryMessengerBinding.instance!.defaultBinaryMessenger;
+    dynamic listenArguments;
+    messenger.setMockMessageHandler(flagChangesChannel,
+        (ByteData? message) async {
+      final MethodCall call = codec.decodeMethodCall(message);
+      if (call.method == 'listen') {
+        listenArguments = call.arguments;
+      }
+      return codec.encodeSuccessEnvelope(null);
+    });
+
+    final Future<LaunchDarklyFlagChangeBatch> firstBatch = launchdarklyFlutter
+        .flagChanges(
+            bufferSize: 16, overflow: LaunchDarklyFlagChangeOverflow.dropOldest)
+        .first;
+    await Future<void>.delayed(Duration.zero);
+    await messenger.handlePlatformMessage(
+        flagChangesChannel,
+        codec.encodeSuccessEnvelope({
+          'changes': [
+            {
+              'flagKey': 'a',
+              'type': 'boolean',
+              'value': true,
+              'oldValue': false
+            }
+          ],
+          'version': 7,
+          'dropped': 2,
+        }),
+        (ByteData? reply) {});
+
+    final LaunchDarklyFlagChangeBatch batch = await firstBatch;
+    expect(listenArguments,
+        {'bufferSize': 16, 'overflow': 'dropOldest', 'binary': false});
+    expect(batch.changes.single.flagKey, 'a');
+    expect(batch.changes.single.value, true);
+    expect(batch.version, 7);
+    expect(batch.dropped, 2);
+
+    messenger.setMockMessageHandler(flagChangesChannel, null);
+  });
+
+  test('flagChanges acknowledges each batch once', () async {
+    const String flagChangesChannel = 'launchdarkly_flutter/flagChanges';
+    const MethodCodec codec = StandardMethodCodec();
+    final TestDefaultBinaryMessenger messenger =
+        TestDefaultBinaryMessengerBinding.instance!.defaultBinaryMessenger;
+    messenger.setMockMessageHandler(flagChangesChannel,
+        (ByteData? message) async => codec.encodeSuccessEnvelope(null));
+
+    final Stream<LaunchDarklyFlagChangeBatch> stream =
+        launchdarklyFlutter.flagChanges();
+    final List<int> firstVersions = [];
+    final List<int> secondVersions = [];
+    final first = stream.listen((batch) => firstVersions.add(batch.version));
+    final second = stream.listen((batch) => secondVersions.add(batch.version));
+    await Future<void>.delayed(Duration.zero);
+    await messenger.handlePlatformMessage(
+        flagChangesChannel,
+        codec.encodeSuccessEnvelope({
+          'changes': [
+            {'flagKey': 'a', 'type': 'boolean', 'value': true}
+          ],
+          'version': 4,
+          'dropped': 0,
+        }),
+        (ByteData? reply) {});
+    await Future<void>.delayed(Duration.zero);
+
+    expect(firstVersions, [4]);
+    expect(secondVersions, [4]);
+    expect(flagChangesDelivered, 1);
+
+    await first.cancel();
+    await second.cancel();
+    messenger.setMockMessageHandler(flagChangesChannel, null);
+  });
+
+  test('setConnectionMode', () async {
+    expect(
+        await launchdarklyFlutter
+            .setConnectionMode(LaunchDarklyConnectionMode.polling),
+        true);
+  });
+
+  test('track calls in a row are sent in one batch', () async {
+    final List<MethodCall> calls = [];
+    channel.setMockMethodCallHandler((MethodCall methodCall) async {
+      calls.add(methodCall);
+      return true;
+    });
+
+    launchdarklyFlutter.track('click');
+    launchdarklyFlutter.trackData('view', {'screen': 'home'});
+    await launchdarklyFlutter.trackMetric('purchase', 9.99);
+    await launchdarklyFlutter.flush();
+
+    expect(calls.map((call) => call.method), ['trackMany', 'flush']);
+    expect(calls.first.arguments['events'], [
+      {'eventName': 'click', 'data': null, 'metricValue': null},
+      {
+        'eventName': 'view',
+        'data': {'screen': 'home'},
+        'metricValue': null
+      },
+      {'eventName': 'purchase', 'data': null, 'metricValue': 9.99},
+    ]);
+  });
+
+  test('a failed event batch is reported once and does not fail flush',
+      () async {
+    channel.setMockMethodCallHandler((MethodCall methodCall) async {
+      if (methodCall.method == 'trackMany') {
+        throw PlatformException(code: 'client not initialized');
+      }
+      return true;
+    });
+    final List<FlutterErrorDetails> reported = [];
+    final FlutterExceptionHandler? onError = FlutterError.onError;
+    FlutterError.onError = reported.add;
+
+    launchdarklyFlutter.track('click');
+    await launchdarklyFlutter.track('view');
+    await launchdarklyFlutter.flush();
+    await launchdarklyFlutter.flush();
+    FlutterError.onError = onError;
+
+    expect(reported.length, 1);
+    expect((reported.single.exception as PlatformException).code,
+        'client not initialized');
+  });
+
+  test('trackMany with no events', () async {
+    await launchdarklyFlutter.trackMany([]);
+  });
+
+  test('variations and events for a secondary environment', () async {
+    final List<MethodCall> calls = [];
+    channel.setMockMethodCallHandler((MethodCall methodCall) async {
+      calls.add(methodCall);
+      return methodCall.method == 'boolVariationFallback' ? false : true;
+    });
+
+    expect(
+        await launchdarklyFlutter.boolVariation('flagKey', true,
+            environment: 'platform'),
+        false);
+    launchdarklyFlutter.track('click', environment: 'platform');
+    await launchdarklyFlutter.track('view');
+
+    expect(calls[0].arguments['environment'], 'platform');
+    expect(calls[1].arguments['environment'], 'platform');
+    expect(calls[2].arguments.containsKey('environment'), false);
+  });
+
+  test('registerFeatureFlagListener with listener ids keeps every listener',
+      () async {
+    final List<dynamic> nativeCalls = [];
+    channel.setMockMethodCallHandler((MethodCall methodCall) async {
+      nativeCalls.add(methodCall.arguments);
+      return true;
+    });
+    final List<String> called = [];
+
+    await launchdarklyFlutter.registerFeatureFlagListener(
+        'flagKey', (flagKey) => called.add('first'),
+        listenerId: 'first');
+    await launchdarklyFlutter.registerFeatureFlagListener(
+        'flagKey', (flagKey) => called.add('second'),
+        listenerId: 'second');
+    await launchdarklyFlutter.unregisterFeatureFlagListener('flagKey',
+        listenerId: 'first');
+    await launchdarklyFlutter.handlerMethodCalls(
+        MethodCall('callbackFlagsChanged', {
+      'changes': [
+        {'flagKey': 'flagKey', 'type': 'boolean', 'value': true}
+      ],
+      'version': 1,
+    }));
+
+    expect(called, ['second']);
+    expect(nativeCalls.map((arguments) => arguments['listenerId']),
+        ['listener:first', 'listener:second', 'listener:first']);
+  });
+
+  test('binary callbackFlagsChanged', () async {
+    final binaryClient = LaunchdarklyFlutter(binaryFlagPayloads: true);
+    final List<LaunchDarklyFlagChange> received = [];
+    binaryClient.allFlagChangesListeners!['all'] = received.addAll;
+
+    // version 5, key 'a' is new, a changed from false to true
+    await binaryClient.handlerMethodCalls(MethodCall('callbackFlagsChanged',
+        Uint8List.fromList([2, 5, 0, 1, 1, 97, 1, 0, 2, 1])));
+    // version 6, no new keys, a removed
+    await binaryClient.handlerMethodCalls(MethodCall(
+        'callbackFlagsChanged', Uint8List.fromList([2, 6, 1, 0, 1, 0, 8, 2])));
+
+    expect(received[0].flagKey, 'a');
+    expect(received[0].type, 'boolean');
+    expect(received[0].value, true);
+    expect(received[0].oldValue, false);
+    expect(received[1].deleted, true);
+    expect(received[1].oldValue, true);
+  });
 }